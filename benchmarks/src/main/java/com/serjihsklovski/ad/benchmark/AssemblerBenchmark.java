@@ -0,0 +1,85 @@
+package com.serjihsklovski.ad.benchmark;
+
+import com.serjihsklovski.ad.component.Instruction;
+import com.serjihsklovski.ad.component.assembler.AsmX86AssemblerImpl;
+import com.serjihsklovski.ad.component.assembler.Assembler;
+import com.serjihsklovski.ad.component.lexer.Lexer;
+import com.serjihsklovski.ad.component.lexer.TableLexerImpl;
+import com.serjihsklovski.ad.component.parser.AsmX86ParserImpl;
+import com.serjihsklovski.ad.component.parser.Parser;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+@State(Scope.Thread)
+public class AssemblerBenchmark {
+
+    @Param
+    private InstructionMix mix;
+
+    private final Assembler assembler = new AsmX86AssemblerImpl();
+    private Instruction[] instructions;
+    private ByteBuffer buffer;
+
+    @Setup
+    public void setUp() {
+        Lexer lexer = new TableLexerImpl();
+        Parser parser = new AsmX86ParserImpl();
+        String[] lines = mix.getBatch();
+
+        instructions = new Instruction[lines.length];
+
+        for (int i = 0; i < lines.length; i++) {
+            instructions[i] = parser.parse(lexer.getLexemes(lines[i]));
+        }
+
+        buffer = ByteBuffer.allocate(2 * lines.length * assembler.getMaxInstructionLength());
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(InstructionMix.BATCH_SIZE)
+    public void assembleHex(Blackhole blackhole) {
+        for (Instruction instruction : instructions) {
+            blackhole.consume(assembler.assemble(instruction));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(InstructionMix.BATCH_SIZE)
+    public void assembleBytes(Blackhole blackhole) {
+        for (Instruction instruction : instructions) {
+            blackhole.consume(assembler.assembleBytes(instruction));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(InstructionMix.BATCH_SIZE)
+    public ByteBuffer assembleInto() {
+        buffer.clear();
+
+        for (Instruction instruction : instructions) {
+            assembler.assembleInto(instruction, buffer);
+        }
+
+        return buffer;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(InstructionMix.BATCH_SIZE)
+    public ByteBuffer assembleHexInto() {
+        buffer.clear();
+
+        for (Instruction instruction : instructions) {
+            assembler.assembleHexInto(instruction, buffer);
+        }
+
+        return buffer;
+    }
+}
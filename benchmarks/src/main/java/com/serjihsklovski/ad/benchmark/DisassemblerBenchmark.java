@@ -0,0 +1,66 @@
+package com.serjihsklovski.ad.benchmark;
+
+import com.serjihsklovski.ad.component.Instruction;
+import com.serjihsklovski.ad.component.assembler.AsmX86AssemblerImpl;
+import com.serjihsklovski.ad.component.assembler.Assembler;
+import com.serjihsklovski.ad.component.disassembler.AsmX86DisassemblerImpl;
+import com.serjihsklovski.ad.component.disassembler.Disassembler;
+import com.serjihsklovski.ad.component.lexer.Lexer;
+import com.serjihsklovski.ad.component.lexer.TableLexerImpl;
+import com.serjihsklovski.ad.component.parser.AsmX86ParserImpl;
+import com.serjihsklovski.ad.component.parser.Parser;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+@State(Scope.Thread)
+public class DisassemblerBenchmark {
+
+    @Param
+    private InstructionMix mix;
+
+    private final Disassembler disassembler = new AsmX86DisassemblerImpl();
+    private ByteBuffer bytes;
+    private String byteSource;
+
+    @Setup
+    public void setUp() {
+        Lexer lexer = new TableLexerImpl();
+        Parser parser = new AsmX86ParserImpl();
+        Assembler assembler = new AsmX86AssemblerImpl();
+        ByteArrayOutputStream machineCode = new ByteArrayOutputStream();
+        StringBuilder hex = new StringBuilder();
+
+        for (String line : mix.getBatch()) {
+            Instruction instruction = parser.parse(lexer.getLexemes(line));
+            byte[] encoded = assembler.assembleBytes(instruction);
+
+            machineCode.write(encoded, 0, encoded.length);
+            hex.append(assembler.assemble(instruction));
+        }
+
+        bytes = ByteBuffer.wrap(machineCode.toByteArray());
+        byteSource = hex.toString();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(InstructionMix.BATCH_SIZE)
+    public void disassembleBytes(Blackhole blackhole) {
+        bytes.rewind();
+        disassembler.disassemble(bytes, blackhole::consume);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(InstructionMix.BATCH_SIZE)
+    public void disassembleHex(Blackhole blackhole) {
+        blackhole.consume(disassembler.disassemble(byteSource, blackhole::consume));
+    }
+}
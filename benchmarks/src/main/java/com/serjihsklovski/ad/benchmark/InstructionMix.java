@@ -0,0 +1,62 @@
+package com.serjihsklovski.ad.benchmark;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Representative source lines of each operand combination the benchmarks run over.
+ */
+public enum InstructionMix {
+    REG_REG(
+            "mov ax, bx",
+            "add cx, dx",
+            "mov dx, cx",
+            "add bx, ax"
+    ),
+    REG_IMM8(
+            "add ax, 0x7f",
+            "shr bx, 3",
+            "add cx, 1",
+            "shr dx"
+    ),
+    REG_IMM16(
+            "mov ax, 0x1234",
+            "add dx, 300",
+            "add ax, 0x1000",
+            "mov bx, 65535"
+    ),
+    JMP(
+            "jmp 0x100",
+            "jmp 16",
+            "jmp 0b1000000",
+            "jmp 0o777"
+    );
+
+    /**
+     * The number of instructions every benchmark invocation processes.
+     */
+    public static final int BATCH_SIZE = 1024;
+
+    private final List<String> lines;
+
+    InstructionMix(String... lines) {
+        this.lines = Arrays.asList(lines);
+    }
+
+    public List<String> getLines() {
+        return lines;
+    }
+
+    /**
+     * @return the lines of the mix repeated up to {@link #BATCH_SIZE}
+     */
+    public String[] getBatch() {
+        String[] batch = new String[BATCH_SIZE];
+
+        for (int i = 0; i < batch.length; i++) {
+            batch[i] = lines.get(i % lines.size());
+        }
+
+        return batch;
+    }
+}
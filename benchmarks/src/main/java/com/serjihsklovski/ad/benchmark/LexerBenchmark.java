@@ -0,0 +1,57 @@
+package com.serjihsklovski.ad.benchmark;
+
+import com.serjihsklovski.ad.component.lexer.DefaultLexerImpl;
+import com.serjihsklovski.ad.component.lexer.LexemeSpans;
+import com.serjihsklovski.ad.component.lexer.Lexer;
+import com.serjihsklovski.ad.component.lexer.TableLexerImpl;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+@State(Scope.Thread)
+public class LexerBenchmark {
+
+    @Param
+    private InstructionMix mix;
+
+    private final Lexer defaultLexer = new DefaultLexerImpl();
+    private final Lexer tableLexer = new TableLexerImpl();
+    private final LexemeSpans spans = new LexemeSpans();
+    private String[] lines;
+
+    @Setup
+    public void setUp() {
+        lines = mix.getBatch();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(InstructionMix.BATCH_SIZE)
+    public void defaultLexemes(Blackhole blackhole) {
+        for (String line : lines) {
+            blackhole.consume(defaultLexer.getLexemes(line));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(InstructionMix.BATCH_SIZE)
+    public void tableLexemes(Blackhole blackhole) {
+        for (String line : lines) {
+            blackhole.consume(tableLexer.getLexemes(line));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(InstructionMix.BATCH_SIZE)
+    public void tableLexemeSpans(Blackhole blackhole) {
+        for (String line : lines) {
+            tableLexer.getLexemeSpans(line, spans);
+            blackhole.consume(spans.size());
+        }
+    }
+}
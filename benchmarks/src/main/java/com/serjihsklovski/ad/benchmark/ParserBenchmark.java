@@ -0,0 +1,59 @@
+package com.serjihsklovski.ad.benchmark;
+
+import com.serjihsklovski.ad.component.Instruction;
+import com.serjihsklovski.ad.component.lexer.Lexer;
+import com.serjihsklovski.ad.component.lexer.TableLexerImpl;
+import com.serjihsklovski.ad.component.parser.AsmX86ParserImpl;
+import com.serjihsklovski.ad.component.parser.Parser;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+@State(Scope.Thread)
+public class ParserBenchmark {
+
+    @Param
+    private InstructionMix mix;
+
+    private final Parser parser = new AsmX86ParserImpl();
+    private List<String>[] lexemes;
+    private Instruction[] instructions;
+
+    @Setup
+    @SuppressWarnings("unchecked")
+    public void setUp() {
+        Lexer lexer = new TableLexerImpl();
+        String[] lines = mix.getBatch();
+
+        lexemes = new List[lines.length];
+        instructions = new Instruction[lines.length];
+
+        for (int i = 0; i < lines.length; i++) {
+            lexemes[i] = lexer.getLexemes(lines[i]);
+            instructions[i] = parser.parse(lexemes[i]);
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(InstructionMix.BATCH_SIZE)
+    public void parseLexemes(Blackhole blackhole) {
+        for (List<String> instruction : lexemes) {
+            blackhole.consume(parser.parse(instruction));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(InstructionMix.BATCH_SIZE)
+    public void formatInstruction(Blackhole blackhole) {
+        for (Instruction instruction : instructions) {
+            blackhole.consume(parser.parse(instruction));
+        }
+    }
+}
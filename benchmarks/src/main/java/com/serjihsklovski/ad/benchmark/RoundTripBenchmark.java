@@ -0,0 +1,50 @@
+package com.serjihsklovski.ad.benchmark;
+
+import com.serjihsklovski.ad.component.assembler.AsmX86AssemblerImpl;
+import com.serjihsklovski.ad.component.assembler.Assembler;
+import com.serjihsklovski.ad.component.disassembler.AsmX86DisassemblerImpl;
+import com.serjihsklovski.ad.component.disassembler.Disassembler;
+import com.serjihsklovski.ad.component.lexer.Lexer;
+import com.serjihsklovski.ad.component.lexer.TableLexerImpl;
+import com.serjihsklovski.ad.component.parser.AsmX86ParserImpl;
+import com.serjihsklovski.ad.component.parser.Parser;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Source line to machine code and back to source text, as `-assemble` followed by `-disassemble` does it.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+@State(Scope.Thread)
+public class RoundTripBenchmark {
+
+    @Param
+    private InstructionMix mix;
+
+    private final Lexer lexer = new TableLexerImpl();
+    private final Parser parser = new AsmX86ParserImpl();
+    private final Assembler assembler = new AsmX86AssemblerImpl();
+    private final Disassembler disassembler = new AsmX86DisassemblerImpl();
+    private String[] lines;
+
+    @Setup
+    public void setUp() {
+        lines = mix.getBatch();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(InstructionMix.BATCH_SIZE)
+    public void roundTrip(Blackhole blackhole) {
+        for (String line : lines) {
+            byte[] machineCode = assembler.assembleBytes(parser.parse(lexer.getLexemes(line)));
+            disassembler.disassemble(ByteBuffer.wrap(machineCode), instruction -> blackhole.consume(parser.parse(instruction)));
+        }
+    }
+}
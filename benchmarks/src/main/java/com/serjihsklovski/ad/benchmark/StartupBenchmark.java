@@ -0,0 +1,72 @@
+package com.serjihsklovski.ad.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The wall time of a one-shot `-assemble` process on a small file, with and without the AppCDS archive
+ * built by `mvn package -Pcds` in the parent project. The jar and the archive are looked up in
+ * `../target` unless the `ad.jar` and `ad.archive` system properties point elsewhere.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 20)
+@Fork(1)
+@State(Scope.Benchmark)
+public class StartupBenchmark {
+
+    private static final String DEFAULT_JAR = "../target/assembler-disassembler-1.1.0.jar";
+    private static final String DEFAULT_ARCHIVE = "../target/assembler-disassembler-1.1.0.jsa";
+
+    @Param({"false", "true"})
+    private boolean sharedArchive;
+
+    private List<String> command;
+    private Path input;
+    private Path output;
+
+    @Setup
+    public void setUp() throws IOException {
+        Path jar = Paths.get(System.getProperty("ad.jar", DEFAULT_JAR));
+        Path archive = Paths.get(System.getProperty("ad.archive", DEFAULT_ARCHIVE));
+
+        if (!Files.isRegularFile(jar) || (sharedArchive && !Files.isRegularFile(archive))) {
+            throw new IllegalStateException("Build the parent project with `mvn package -Pcds` first");
+        }
+
+        input = Files.createTempFile("startup", ".asm");
+        output = Files.createTempFile("startup", ".hex");
+        Files.write(input, InstructionMix.REG_IMM16.getLines(), StandardCharsets.UTF_8);
+
+        command = new ArrayList<>();
+        command.add(Paths.get(System.getProperty("java.home"), "bin", "java").toString());
+
+        if (sharedArchive) {
+            command.add("-XX:SharedArchiveFile=" + archive);
+        }
+
+        command.addAll(Arrays.asList(
+                "-jar", jar.toString(), "-assemble", "-input", input.toString(), "-output", output.toString()));
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(input);
+        Files.deleteIfExists(output);
+    }
+
+    @Benchmark
+    public int assemble() throws IOException, InterruptedException {
+        return new ProcessBuilder(command).inheritIO().start().waitFor();
+    }
+}
@@ -0,0 +1,12 @@
+mov ax, bx
+mov cx, 0x1234
+add dx, ax
+add bx, 0x7f
+add ax, 0x1234
+add cx, 0x1234
+not dx
+shr ax
+shr bx, 4
+jmp 0x100
+loop: add ax, 1
+jmp loop
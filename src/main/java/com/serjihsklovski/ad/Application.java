@@ -1,20 +1,33 @@
 package com.serjihsklovski.ad;
 
+import com.serjihsklovski.ad.api.command.Command;
 import com.serjihsklovski.ad.api.command.CommandManager;
 import org.apache.commons.cli.*;
 
+import java.io.IOException;
+import java.io.PrintStream;
 import java.util.function.Consumer;
 
 public class Application implements Consumer<String[]> {
 
+    public static final int EXIT_SUCCESS = 0;
+    public static final int EXIT_FAILURE = 1;
+
     @Override
     public void accept(String[] args) {
-        Options options = CommandManager.prepareOptions();
-        CommandLine cmd = createCommandLine(options, args);
-        CommandManager.forName(CommandManager.determineCommand(cmd)).execute(cmd);
+        run(args);
+    }
+
+    /**
+     * @return the exit status of the command
+     */
+    public int run(String[] args) {
+        CommandLine cmd = createCommandLine(args);
+        return execute(getCommand(cmd), cmd, System.out, System.err);
     }
 
-    private CommandLine createCommandLine(Options options, String[] args) {
+    public CommandLine createCommandLine(String[] args) {
+        Options options = CommandManager.prepareOptions();
         CommandLineParser parser = new DefaultParser();
 
         try {
@@ -23,4 +36,27 @@ public class Application implements Consumer<String[]> {
             throw new RuntimeException(pe);
         }
     }
+
+    public Command getCommand(CommandLine cmd) {
+        return CommandManager.forName(CommandManager.determineCommand(cmd));
+    }
+
+    /**
+     * Runs the command, reporting an I/O failure with its stack trace and any other one with its message; the
+     * message goes to {@code err} as well if the command writes its output to the standard output.
+     *
+     * @return {@link #EXIT_SUCCESS}, or {@link #EXIT_FAILURE} if the command failed
+     */
+    public static int execute(Command command, CommandLine cmd, PrintStream out, PrintStream err) {
+        try {
+            command.execute(cmd);
+            return EXIT_SUCCESS;
+        } catch (IOException ioe) {
+            ioe.printStackTrace(err);
+        } catch (RuntimeException re) {
+            ("-".equals(cmd.getOptionValue("output")) ? err : out).println("Error: " + re.getMessage());
+        }
+
+        return EXIT_FAILURE;
+    }
 }
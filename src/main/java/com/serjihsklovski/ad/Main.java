@@ -3,6 +3,10 @@ package com.serjihsklovski.ad;
 public class Main {
 
     public static void main(String[] args) {
-        new Application().accept(args);
+        int status = new Application().run(args);
+
+        if (status != Application.EXIT_SUCCESS) {
+            System.exit(status);
+        }
     }
 }
@@ -1,60 +1,710 @@
 package com.serjihsklovski.ad.api.command;
 
+import com.serjihsklovski.ad.component.Instruction;
 import com.serjihsklovski.ad.component.assembler.AsmX86AssemblerImpl;
 import com.serjihsklovski.ad.component.assembler.Assembler;
-import com.serjihsklovski.ad.component.lexer.DefaultLexerImpl;
+import com.serjihsklovski.ad.component.assembler.Program;
+import com.serjihsklovski.ad.component.lexer.LexemeSpans;
 import com.serjihsklovski.ad.component.lexer.Lexer;
+import com.serjihsklovski.ad.component.lexer.TableLexerImpl;
+import com.serjihsklovski.ad.component.optimizer.Optimizer;
+import com.serjihsklovski.ad.component.optimizer.PeepholeOptimizerImpl;
 import com.serjihsklovski.ad.component.parser.AsmX86ParserImpl;
 import com.serjihsklovski.ad.component.parser.Parser;
 import org.apache.commons.cli.CommandLine;
 
 import java.io.*;
-import java.nio.charset.StandardCharsets;
-import java.nio.file.Files;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
 import java.nio.file.Paths;
-import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.function.Consumer;
 
 public class AssembleCommand implements Command {
 
-    private Lexer lexer = new DefaultLexerImpl();
+    private static final int BATCH_SIZE = 1 << 16;
+    private static final int CHUNK_LINES = 1 << 12;
+    private static final int PENDING_CHUNKS_PER_THREAD = 4;
+
+    /**
+     * Content-defined chunks for the cache: a chunk ends after a line where the rolling hash of the last
+     * {@link #CACHE_CHUNK_WINDOW} lines has its low bits clear, so an edit moves only the boundaries next to it.
+     * The length limits keep chunks from degenerating.
+     */
+    private static final int CACHE_CHUNK_MASK = (1 << 6) - 1;
+    private static final int CACHE_CHUNK_WINDOW = 4;
+    private static final int CACHE_CHUNK_MIN_LINES = 8;
+    private static final int CACHE_CHUNK_MAX_LINES = 1 << 10;
+
+    /**
+     * The first byte of a cached chunk: its linked code follows, or the chunk as a program not linked yet.
+     */
+    private static final byte CACHED_CODE = 0;
+    private static final byte CACHED_PROGRAM = 1;
+
+    private static final String SOURCE_EXTENSION = ".asm";
+
+    private static final String EXCEPTION_MSG_CACHE_IN_BATCH = "A cache cannot be used in the batch mode!";
+
+    private Lexer lexer = new TableLexerImpl();
     private Parser parser = new AsmX86ParserImpl();
     private Assembler assembler = new AsmX86AssemblerImpl();
 
     @Override
-    public void execute(CommandLine cmd) {
-        String input = cmd.getOptionValue("input");
-        String output = cmd.getOptionValue("output");
+    public void execute(CommandLine cmd) throws IOException {
+        ByteFormat format = ByteFormat.of(cmd);
+        int threads = CommandOptions.getThreads(cmd);
+        RunStats stats = RunStats.of("assemble", cmd);
+        LineEncoder encoder = new LineEncoder(
+                format, CommandOptions.getMemoCapacity(cmd), cmd.hasOption("optimize"), stats);
+        Path output = Paths.get(cmd.getOptionValue("output"));
+        boolean gzip = cmd.hasOption("gzip");
+
+        if (cmd.hasOption("cache")) {
+            if (cmd.hasOption("batch")) {
+                throw new RuntimeException(EXCEPTION_MSG_CACHE_IN_BATCH);
+            }
+
+            try (AssemblyCache cache = AssemblyCache.load(
+                    Paths.get(cmd.getOptionValue("cache")), format, encoder.isOptimizing())) {
+                assembleCached(Paths.get(cmd.getOptionValue("input")), output, gzip, encoder, cache);
+                cache.save();
+            }
+        } else if (cmd.hasOption("batch")) {
+            Batch.of(cmd.getOptionValue("input"), SOURCE_EXTENSION)
+                    .run(output, format.getExtension() + (gzip ? CompressedStreams.EXTENSION : ""), threads, stats,
+                            (in, out) -> assemble(in, out, gzip, encoder, 1));
+        } else {
+            assemble(Paths.get(cmd.getOptionValue("input")), output, gzip, encoder, threads);
+        }
+
+        stats.report();
+    }
+
+    /**
+     * @param gzip whether to compress the output even if its name does not end with `.gz`
+     */
+    private void assemble(Path input, Path output, boolean gzip, LineEncoder encoder, int threads)
+            throws IOException {
+        encoder.stats.startFile();
+
+        try (
+                BufferedReader reader = CompressedStreams.newBufferedReader(input);
+                AtomicFileOutput out = new AtomicFileOutput(output, gzip || CompressedStreams.isCompressed(output))
+        ) {
+            if (threads > 1 || encoder.isOptimizing()) {
+                assembleParallel(reader, out.getStream(), encoder, threads);
+            } else {
+                assemble(reader, out.getStream(), encoder);
+            }
+
+            out.commit();
+        }
+
+        encoder.stats.addFile(input, output);
+    }
+
+    /**
+     * Splices the output together from the cached bytes of unchanged chunks, encoding only the others.
+     */
+    private void assembleCached(Path input, Path output, boolean gzip, LineEncoder encoder, AssemblyCache cache)
+            throws IOException {
+        encoder.stats.startFile();
+
+        try (
+                BufferedReader reader = CompressedStreams.newBufferedReader(input);
+                AtomicFileOutput out = new AtomicFileOutput(output, gzip || CompressedStreams.isCompressed(output))
+        ) {
+            LinkingOutput linkingOutput = new LinkingOutput(out.getStream(), encoder);
+            CacheChunkBoundaries boundaries = new CacheChunkBoundaries();
+            SourceChunk chunk = new SourceChunk(CACHE_CHUNK_MIN_LINES);
+            String line;
+
+            encoder.stats.startLaps();
+
+            while ((line = reader.readLine()) != null) {
+                encoder.stats.lap(RunStats.Stage.READ);
+                chunk.add(line);
+
+                if (boundaries.isEnd(line, chunk.size()) && encoder.isChunkEnd(chunk)) {
+                    assembleCachedChunk(chunk, encoder, cache, linkingOutput);
+                    chunk.clear();
+                }
+            }
+
+            if (!chunk.isEmpty()) {
+                assembleCachedChunk(chunk, encoder, cache, linkingOutput);
+            }
+
+            linkingOutput.finish();
+            out.commit();
+        }
+
+        encoder.stats.addFile(input, output);
+    }
+
+    /**
+     * A chunk with labels depends on the rest of the source for the sizes of its jumps, so it is cached before
+     * linking, and linked again with the rest when it is reused.
+     */
+    private void assembleCachedChunk(SourceChunk source, LineEncoder encoder, AssemblyCache cache,
+                                     LinkingOutput out) throws IOException {
+        ByteBuffer hash = cache.hash(source.getLines());
+        byte[] cached = cache.get(hash);
+
+        encoder.stats.addInstructions(source.size());
+
+        if (cached == null) {
+            encoder.stats.startLaps();
+            Program chunk = assembleChunk(source, encoder);
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream(chunk.getCodeLength() + 1);
+
+            if (chunk.hasLabels()) {
+                DataOutputStream data = new DataOutputStream(bytes);
+                data.writeByte(CACHED_PROGRAM);
+                chunk.writeUnlinked(data);
+                cache.put(hash, bytes.toByteArray());
+                out.write(chunk);
+                return;
+            }
+
+            bytes.write(CACHED_CODE);
+            chunk.writeTo(bytes);
+            cached = bytes.toByteArray();
+            cache.put(hash, cached);
+        }
+
+        if (cached[0] == CACHED_PROGRAM) {
+            Program chunk = encoder.newProgram();
+            chunk.appendUnlinked(new DataInputStream(new ByteArrayInputStream(cached, 1, cached.length - 1)));
+            out.write(chunk);
+        } else {
+            out.write(cached, 1, cached.length - 1);
+        }
+    }
+
+    /**
+     * Encodes the instructions into one reusable buffer, which is flushed once it may not fit the next one.
+     */
+    private void assemble(BufferedReader reader, OutputStream out, LineEncoder encoder) throws IOException {
+        LinkingOutput linkingOutput = new LinkingOutput(out, encoder);
+        ByteBuffer batch = ByteBuffer.allocate(BATCH_SIZE);
+        int maxLength = encoder.getMaxLength();
+        String line;
+
+        encoder.stats.startLaps();
+
+        while ((line = reader.readLine()) != null) {
+            encoder.stats.lap(RunStats.Stage.READ);
+            encoder.stats.addInstructions(1);
+
+            if (batch.remaining() < maxLength) {
+                linkingOutput.write(batch);
+            }
+
+            Instruction labeled = encoder.encode(line, batch);
+
+            if (labeled != null) {
+                linkingOutput.write(batch);
+                linkingOutput.add(labeled);
+            }
+        }
+
+        linkingOutput.write(batch);
+        linkingOutput.finish();
+    }
+
+    /**
+     * Assembles in a staged pipeline: a reader splits the input into chunks of lines, {@code threads} encoders
+     * encode them, and the calling thread writes them in input order, so the output is identical to the
+     * sequential one. The stages pass the chunks through bounded queues, so a stage that falls behind holds back
+     * the ones before it; at most {@link #PENDING_CHUNKS_PER_THREAD} chunks per encoder are in flight. An
+     * optimized source is always encoded here, even by a single encoder, as the optimizer works within chunks;
+     * they end only where it folds nothing across, so the output is that of optimizing the whole source.
+     */
+    private void assembleParallel(BufferedReader reader, OutputStream out, LineEncoder encoder, int threads)
+            throws IOException {
+        ExecutorService executor = encoder.stats.newThreadPool(threads + 1);
+        PipelineQueue<FutureTask<Program>> encodeQueue = encoder.stats.newQueue("encode", threads);
+        PipelineQueue<FutureTask<Program>> writeQueue =
+                encoder.stats.newQueue("write", PENDING_CHUNKS_PER_THREAD * threads);
+        LinkingOutput linkingOutput = new LinkingOutput(out, encoder);
+
+        try {
+            Future<Long> reading = executor.submit(() -> readChunks(reader, encoder, encodeQueue, writeQueue));
+
+            for (int i = 0; i < threads; i++) {
+                executor.submit(() -> encodeChunks(encodeQueue));
+            }
+
+            FutureTask<Program> chunk;
+
+            while ((chunk = takeChunk(writeQueue)) != null) {
+                linkingOutput.write(getResult(chunk));
+            }
+
+            encoder.stats.addInstructions(getResult(reading));
+            linkingOutput.finish();
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Passes every chunk to the writer, in input order, and to the encoders.
+     *
+     * @return the number of lines read
+     */
+    private long readChunks(BufferedReader reader, LineEncoder encoder,
+                            PipelineQueue<FutureTask<Program>> encodeQueue,
+                            PipelineQueue<FutureTask<Program>> writeQueue) throws IOException, InterruptedException {
+        long lines = 0;
+
+        try {
+            SourceChunk chunk = new SourceChunk(CHUNK_LINES);
+            String line;
+
+            encoder.stats.startLaps();
+
+            while ((line = reader.readLine()) != null) {
+                encoder.stats.lap(RunStats.Stage.READ);
+                chunk.add(line);
+
+                if (chunk.size() >= CHUNK_LINES && encoder.isChunkEnd(chunk)) {
+                    putChunk(chunk, encoder, encodeQueue, writeQueue);
+                    lines += chunk.size();
+                    chunk = new SourceChunk(CHUNK_LINES);
+                    encoder.stats.startLaps();
+                }
+            }
+
+            if (!chunk.isEmpty()) {
+                putChunk(chunk, encoder, encodeQueue, writeQueue);
+                lines += chunk.size();
+            }
+
+            return lines;
+        } finally {
+            encoder.stats.endLaps();
+            encodeQueue.close();
+            writeQueue.close();
+        }
+    }
+
+    private void putChunk(SourceChunk source, LineEncoder encoder, PipelineQueue<FutureTask<Program>> encodeQueue,
+                          PipelineQueue<FutureTask<Program>> writeQueue) throws InterruptedException {
+        FutureTask<Program> chunk = new FutureTask<>(() -> assembleChunkOnWorker(source, encoder));
+
+        writeQueue.put(chunk);
+        encodeQueue.put(chunk);
+    }
+
+    private static Void encodeChunks(PipelineQueue<FutureTask<Program>> encodeQueue) throws InterruptedException {
+        FutureTask<Program> chunk;
+
+        while ((chunk = encodeQueue.take()) != null) {
+            chunk.run();
+        }
+
+        return null;
+    }
+
+    private Program assembleChunkOnWorker(SourceChunk source, LineEncoder encoder) {
+        encoder.stats.startLaps();
 
         try {
-            if (Files.exists(Paths.get(output))) {
-                Files.delete(Paths.get(output));
-            }
-            Files.createFile(Paths.get(output));
-
-            Files.readAllLines(Paths.get(input), StandardCharsets.UTF_8).stream()
-                    .map(line -> lexer.getLexemes(line))
-                    .map(lexemes -> parser.parse(lexemes))
-                    .map(operationTreeNode -> assembler.assemble(operationTreeNode))
-                    .forEach(o -> {
-                        try {
-                            Files.write(Paths.get(output), o.getBytes(), StandardOpenOption.APPEND);
-                        } catch (IOException ioe) {
-                            throw new RuntimeException(ioe);
-                        }
-                    });
-        } catch (IOException ioe) {
-            ioe.printStackTrace();
-
-            try {
-                Files.delete(Paths.get(output));
-            } catch (IOException ignored) {
-            }
-        } catch (RuntimeException re) {
-            System.out.println("Error: " + re.getMessage());
-
-            try {
-                Files.delete(Paths.get(output));
-            } catch (IOException ignored) {
+            return assembleChunk(source, encoder);
+        } finally {
+            encoder.stats.endLaps();
+        }
+    }
+
+    private Program assembleChunk(SourceChunk source, LineEncoder encoder) {
+        ByteBuffer chunk = ByteBuffer.allocate(source.size() * encoder.getMaxLength());
+        Program program = encoder.newProgram();
+        Consumer<Instruction> addLabeled = labeled -> {
+            program.appendCode(chunk.array(), 0, chunk.position());
+            chunk.clear();
+            program.add(labeled);
+            encoder.stats.lap(RunStats.Stage.LINK);
+        };
+
+        if (encoder.isOptimizing()) {
+            encoder.optimize(source, instruction -> {
+                encoder.stats.lap(RunStats.Stage.OPTIMIZE);
+                Instruction labeled = encoder.encode(instruction, chunk);
+
+                if (labeled != null) {
+                    addLabeled.accept(labeled);
+                }
+            });
+        } else {
+            for (String line : source.getLines()) {
+                Instruction labeled = encoder.encode(line, chunk);
+
+                if (labeled != null) {
+                    addLabeled.accept(labeled);
+                }
+            }
+        }
+
+        program.appendCode(chunk.array(), 0, chunk.position());
+        return program;
+    }
+
+    private static FutureTask<Program> takeChunk(PipelineQueue<FutureTask<Program>> writeQueue) {
+        try {
+            return writeQueue.take();
+        } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(ie);
+        }
+    }
+
+    private static <T> T getResult(Future<T> result) {
+        try {
+            return result.get();
+        } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(ie);
+        } catch (ExecutionException ee) {
+            if (ee.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) ee.getCause();
+            }
+
+            throw new RuntimeException(ee.getCause());
+        }
+    }
+
+    /**
+     * Encodes source lines in one format, shared by all workers of a run. The bytes of recently seen lines
+     * are memoized by their lexemes separated by single spaces, as the lexer ignores whitespace anyway, so
+     * `add ax,1` and `add  ax, 1` share an entry; lines with labels are left to a {@link Program}. A line is
+     * lexed into spans reused by the thread, so only the key and the instruction are allocated.
+     */
+    private class LineEncoder {
+
+        private final ThreadLocal<LexemeSpans> spans = ThreadLocal.withInitial(LexemeSpans::new);
+        private final ThreadLocal<StringBuilder> keys = ThreadLocal.withInitial(StringBuilder::new);
+        private final ByteFormat format;
+        private final MemoCache<String, byte[]> memo;
+        private final Optimizer optimizer;
+        private final RunStats stats;
+
+        LineEncoder(ByteFormat format, int memoCapacity, boolean optimize, RunStats stats) {
+            this.format = format;
+            this.memo = new MemoCache<>(memoCapacity);
+            this.optimizer = optimize ? new PeepholeOptimizerImpl() : null;
+            this.stats = stats;
+
+            stats.setMemo(memo);
+        }
+
+        boolean isOptimizing() {
+            return optimizer != null;
+        }
+
+        int getMaxLength() {
+            int length = assembler.getMaxInstructionLength();
+            return (format == ByteFormat.BIN) ? length : 2 * length;
+        }
+
+        Program newProgram() {
+            return new Program(assembler, format == ByteFormat.HEX);
+        }
+
+        /**
+         * Appends the encoded line to the heap buffer, unless it defines or refers to a label.
+         *
+         * @return the instruction of a line with labels, which is not encoded, or null
+         */
+        Instruction encode(String line, ByteBuffer buffer) {
+            LexemeSpans lexemes = lex(line);
+
+            if (!memo.isEnabled()) {
+                return encode(parse(lexemes), buffer);
+            }
+
+            String key = getKey(lexemes);
+            byte[] encoded = memo.get(key);
+
+            if (encoded != null) {
+                buffer.put(encoded);
+                stats.lap(RunStats.Stage.ENCODE);
+                return null;
+            }
+
+            int start = buffer.position();
+            Instruction labeled = encode(parse(lexemes), buffer);
+
+            if (labeled == null) {
+                memo.put(key, Arrays.copyOfRange(buffer.array(), start, buffer.position()));
+            }
+
+            return labeled;
+        }
+
+        private String getKey(LexemeSpans lexemes) {
+            StringBuilder key = keys.get();
+            CharSequence source = lexemes.getSource();
+
+            key.setLength(0);
+
+            for (int i = 0; i < lexemes.size(); i++) {
+                if (i > 0) {
+                    key.append(' ');
+                }
+
+                key.append(source, lexemes.getOffset(i), lexemes.getOffset(i) + lexemes.getLength(i));
+            }
+
+            return key.toString();
+        }
+
+        private Instruction parse(String line) {
+            return parse(lex(line));
+        }
+
+        private LexemeSpans lex(String line) {
+            LexemeSpans lexemes = spans.get();
+            lexer.getLexemeSpans(line, lexemes);
+            stats.lap(RunStats.Stage.LEX);
+
+            return lexemes;
+        }
+
+        private Instruction parse(LexemeSpans lexemes) {
+            Instruction instruction = parser.parse(lexemes);
+            stats.lap(RunStats.Stage.PARSE);
+
+            return instruction;
+        }
+
+        /**
+         * @return whether the chunk may end after its last line: when optimizing, only after an instruction the
+         * optimizer folds nothing across, so that the chunks optimized one by one give the output of the whole
+         * source. The instruction parsed to tell is kept with the chunk.
+         */
+        boolean isChunkEnd(SourceChunk chunk) {
+            if (optimizer == null) {
+                return true;
+            }
+
+            Instruction instruction = parse(chunk.getLastLine());
+            chunk.setLastInstruction(instruction);
+            return optimizer.isBoundary(instruction);
+        }
+
+        /**
+         * Parses the lines not parsed yet and passes the optimized instructions of the chunk to the consumer.
+         */
+        void optimize(SourceChunk chunk, Consumer<Instruction> consumer) {
+            List<Instruction> instructions = new ArrayList<>(chunk.size());
+
+            for (int i = 0; i < chunk.size(); i++) {
+                Instruction instruction = chunk.getInstruction(i);
+                instructions.add((instruction != null) ? instruction : parse(chunk.getLines().get(i)));
+            }
+
+            optimizer.optimize(instructions, consumer);
+            stats.lap(RunStats.Stage.OPTIMIZE);
+        }
+
+        /**
+         * Appends the encoded instruction to the heap buffer, unless it defines or refers to a label.
+         *
+         * @return the instruction if it has labels, or null
+         */
+        Instruction encode(Instruction instruction, ByteBuffer buffer) {
+            if (instruction.hasLabels()) {
+                return instruction;
+            }
+
+            if (format == ByteFormat.BIN) {
+                assembler.assembleInto(instruction, buffer);
+            } else {
+                assembler.assembleHexInto(instruction, buffer);
+            }
+
+            stats.lap(RunStats.Stage.ENCODE);
+            return null;
+        }
+    }
+
+    /**
+     * Writes the encoded source straight through up to its first line with a label. The rest is collected
+     * into a program, as its jumps can be sized only once their labels are known: whenever the program has
+     * doubled, the code up to its first jump still to be sized is written ahead, and {@link #finish()} writes
+     * what is left.
+     */
+    /**
+     * The lines of a chunk, with the instructions of those parsed already to tell whether the chunk ends there,
+     * which optimizing the chunk reuses.
+     */
+    private static class SourceChunk {
+
+        private final List<String> lines;
+        private final List<Instruction> instructions = new ArrayList<>();
+
+        SourceChunk(int capacity) {
+            this.lines = new ArrayList<>(capacity);
+        }
+
+        void add(String line) {
+            lines.add(line);
+        }
+
+        int size() {
+            return lines.size();
+        }
+
+        boolean isEmpty() {
+            return lines.isEmpty();
+        }
+
+        void clear() {
+            lines.clear();
+            instructions.clear();
+        }
+
+        List<String> getLines() {
+            return lines;
+        }
+
+        String getLastLine() {
+            return lines.get(lines.size() - 1);
+        }
+
+        /**
+         * Pads the instructions with nulls up to the last line, so a chunk never parsed holds none.
+         */
+        void setLastInstruction(Instruction instruction) {
+            while (instructions.size() < lines.size()) {
+                instructions.add(null);
+            }
+
+            instructions.set(lines.size() - 1, instruction);
+        }
+
+        /**
+         * @return the instruction of the line if it was parsed already, or null
+         */
+        Instruction getInstruction(int index) {
+            return (index < instructions.size()) ? instructions.get(index) : null;
+        }
+    }
+
+    /**
+     * Ends the cache chunks by a hash of the last {@link #CACHE_CHUNK_WINDOW} lines, rolled over the source: each
+     * line's hash is rotated by its distance from the newest line, so the oldest one is rotated out again.
+     */
+    private static class CacheChunkBoundaries {
+
+        private final int[] window = new int[CACHE_CHUNK_WINDOW];
+        private int oldest;
+        private int hash;
+
+        /**
+         * @param lines the number of lines in the chunk so far, the given one included
+         */
+        boolean isEnd(String line, int lines) {
+            int lineHash = line.hashCode() * 0x9e3779b9;
+
+            hash = Integer.rotateLeft(hash, 1) ^ Integer.rotateLeft(window[oldest], CACHE_CHUNK_WINDOW) ^ lineHash;
+            window[oldest] = lineHash;
+            oldest = (oldest + 1) % CACHE_CHUNK_WINDOW;
+
+            if (lines < CACHE_CHUNK_MIN_LINES) {
+                return false;
+            }
+
+            return lines >= CACHE_CHUNK_MAX_LINES || ((hash ^ (hash >>> 16)) & CACHE_CHUNK_MASK) == 0;
+        }
+    }
+
+    private static class LinkingOutput {
+
+        private static final int FLUSH_LENGTH = 1 << 20;
+
+        private final OutputStream out;
+        private final LineEncoder encoder;
+        private Program program;
+        private int flushLength = FLUSH_LENGTH;
+
+        LinkingOutput(OutputStream out, LineEncoder encoder) {
+            this.out = out;
+            this.encoder = encoder;
+        }
+
+        void write(byte[] code, int offset, int length) throws IOException {
+            if (program == null) {
+                out.write(code, offset, length);
+            } else {
+                program.appendCode(code, offset, length);
+                flushProgram();
+            }
+
+            encoder.stats.lap(RunStats.Stage.WRITE);
+        }
+
+        /**
+         * Writes the code in the heap buffer and clears it.
+         */
+        void write(ByteBuffer buffer) throws IOException {
+            write(buffer.array(), 0, buffer.position());
+            buffer.clear();
+        }
+
+        void write(Program chunk) throws IOException {
+            encoder.stats.startLaps();
+
+            if (program == null && !chunk.hasLabels()) {
+                chunk.writeTo(out);
+            } else if (program == null) {
+                program = chunk;
+            } else {
+                program.append(chunk);
+            }
+
+            if (program != null) {
+                flushProgram();
+            }
+
+            encoder.stats.lap(RunStats.Stage.WRITE);
+        }
+
+        void add(Instruction instruction) throws IOException {
+            if (program == null) {
+                program = encoder.newProgram();
+            }
+
+            program.add(instruction);
+            flushProgram();
+            encoder.stats.lap(RunStats.Stage.LINK);
+        }
+
+        /**
+         * Flushes the program once it has doubled since the last flush, so that a jump that stays open keeps the
+         * flushes linear in the code.
+         */
+        private void flushProgram() throws IOException {
+            if (program.getCodeLength() >= flushLength) {
+                program.flush(out);
+                flushLength = (int) Math.max(FLUSH_LENGTH, Math.min(Integer.MAX_VALUE, 2L * program.getCodeLength()));
+            }
+        }
+
+        void finish() throws IOException {
+            if (program != null) {
+                encoder.stats.startLaps();
+                program.writeTo(out);
+                encoder.stats.lap(RunStats.Stage.LINK);
             }
         }
     }
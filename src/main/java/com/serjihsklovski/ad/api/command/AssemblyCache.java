@@ -0,0 +1,362 @@
+package com.serjihsklovski.ad.api.command;
+
+import com.serjihsklovski.ad.component.encoding.InstructionForm;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+/**
+ * The encoded bytes of source chunks by the SHA-256 of their text, output format and optimization, and of the
+ * version of the encoder, kept in a file between runs. Only the chunks of the latest run are saved, so the file
+ * does not outgrow the source. An unreadable file, or one of another format, is treated as an empty cache, and a
+ * chunk whose bytes fail their checksum as a miss.
+ * <p>
+ * The file holds the bytes of the chunks back to back, followed by their index: the hash, the length and the
+ * CRC-32 of each chunk, then the number of chunks. Only the index is kept in memory; the bytes of a chunk are read from the
+ * previous file when it is reused, through a window that follows the reads, and the new file is written as the
+ * chunks come, replacing the previous one on {@link #save()}. A chunk first met in this run is encoded again
+ * when it recurs, as its bytes are not kept.
+ */
+final class AssemblyCache implements Closeable {
+
+    private static final int MAGIC = 0x41444333;
+
+    /**
+     * To be raised whenever the assembler or the optimizer encodes a line differently; a change of the encoding
+     * tables is caught by {@link #ENCODING_TABLES} alone.
+     */
+    private static final int ENCODER_VERSION = 1;
+    private static final byte[] ENCODING_TABLES = describeEncodingTables();
+
+    private static final int HASH_LENGTH = 32;
+    private static final int MAX_ENTRY_LENGTH = 1 << 24;
+    private static final int HEADER_LENGTH = 4;
+    private static final int INDEX_ENTRY_LENGTH = HASH_LENGTH + 4 + 4;
+    private static final int TRAILER_LENGTH = 4;
+    private static final int WINDOW_SIZE = 1 << 20;
+    private static final long NOT_IN_PREVIOUS = -1;
+
+    private final ByteFormat format;
+    private final boolean optimized;
+    private final MessageDigest digest;
+    private final CRC32 checksum = new CRC32();
+    private final FileChannel previousFile;
+    private final Map<ByteBuffer, Entry> entries;
+    private final List<Entry> saved = new ArrayList<>();
+    private final ByteBuffer window = ByteBuffer.allocate(WINDOW_SIZE);
+    private long windowOffset;
+    private final AtomicFileOutput out;
+    private final DataOutputStream data;
+    private byte[] text = new byte[1 << 16];
+
+    private AssemblyCache(Path file, ByteFormat format, boolean optimized, FileChannel previousFile,
+                          Map<ByteBuffer, Entry> entries) throws IOException {
+        this.format = format;
+        this.optimized = optimized;
+        this.previousFile = previousFile;
+        this.entries = entries;
+        window.limit(0);
+
+        try {
+            this.digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException nsae) {
+            throw new IllegalStateException(nsae);
+        }
+
+        this.out = new AtomicFileOutput(file);
+        this.data = new DataOutputStream(out.getStream());
+        data.writeInt(MAGIC);
+    }
+
+    /**
+     * Reads the index of the previous file, if any, and starts the new one.
+     */
+    static AssemblyCache load(Path file, ByteFormat format, boolean optimized) throws IOException {
+        FileChannel channel;
+
+        try {
+            channel = FileChannel.open(file, StandardOpenOption.READ);
+        } catch (NoSuchFileException nsfe) {
+            return new AssemblyCache(file, format, optimized, null, new HashMap<>());
+        }
+
+        try {
+            Map<ByteBuffer, Entry> entries = readIndex(channel);
+
+            if (entries == null) {
+                channel.close();
+                return new AssemblyCache(file, format, optimized, null, new HashMap<>());
+            }
+
+            return new AssemblyCache(file, format, optimized, channel, entries);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * @return the chunks of the file by their hashes, or null if the file is not a valid cache
+     */
+    private static Map<ByteBuffer, Entry> readIndex(FileChannel channel) throws IOException {
+        long size = channel.size();
+
+        if (size < HEADER_LENGTH + TRAILER_LENGTH || readInt(channel, 0) != MAGIC) {
+            return null;
+        }
+
+        int count = readInt(channel, size - TRAILER_LENGTH);
+        long indexOffset = size - TRAILER_LENGTH - (long) count * INDEX_ENTRY_LENGTH;
+
+        if (count < 0 || indexOffset < HEADER_LENGTH) {
+            return null;
+        }
+
+        Map<ByteBuffer, Entry> entries = new HashMap<>();
+        long offset = HEADER_LENGTH;
+
+        channel.position(indexOffset);
+        DataInputStream in = new DataInputStream(new BufferedInputStream(Channels.newInputStream(channel)));
+
+        for (int i = 0; i < count; i++) {
+            byte[] hash = new byte[HASH_LENGTH];
+            in.readFully(hash);
+
+            int length = in.readInt();
+            int crc = in.readInt();
+
+            if (length < 0 || length > MAX_ENTRY_LENGTH) {
+                return null;
+            }
+
+            entries.put(ByteBuffer.wrap(hash), new Entry(hash, offset, length, crc));
+            offset += length;
+        }
+
+        return (offset == indexOffset) ? entries : null;
+    }
+
+    private static byte[] describeEncodingTables() {
+        StringBuilder tables = new StringBuilder();
+
+        for (InstructionForm form : InstructionForm.values()) {
+            tables.append(form).append(' ')
+                    .append(form.hasOperandSizePrefix()).append(' ')
+                    .append(form.getOpcode()).append(' ')
+                    .append(form.getOpcodeExtension()).append(' ')
+                    .append(form.getOperand(0)).append(' ')
+                    .append(form.getOperand(1)).append(' ')
+                    .append(form.getImmediate()).append('\n');
+        }
+
+        return tables.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static int readInt(FileChannel channel, long position) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(4);
+        readFully(channel, buffer, position);
+        return buffer.getInt(0);
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, position + buffer.position());
+
+            if (read < 0) {
+                throw new EOFException();
+            }
+        }
+    }
+
+    /**
+     * Hashes the lines encoded into one reusable array: ASCII characters as single bytes, any other UTF-16
+     * unit as three bytes starting with a byte above 0x7f, which keeps the encoding unambiguous.
+     */
+    ByteBuffer hash(List<String> lines) {
+        int length = 0;
+
+        for (String line : lines) {
+            if (text.length < length + 3 * line.length() + 1) {
+                text = Arrays.copyOf(text, 2 * (length + 3 * line.length() + 1));
+            }
+
+            text[length++] = '\n';
+
+            for (int i = 0; i < line.length(); i++) {
+                char c = line.charAt(i);
+
+                if (c < 0x80) {
+                    text[length++] = (byte) c;
+                } else {
+                    text[length++] = (byte) (0xe0 | (c >> 12));
+                    text[length++] = (byte) (0x80 | ((c >> 6) & 0x3f));
+                    text[length++] = (byte) (0x80 | (c & 0x3f));
+                }
+            }
+        }
+
+        digest.update((byte) ENCODER_VERSION);
+        digest.update(ENCODING_TABLES);
+        digest.update(format.getExtension().getBytes(StandardCharsets.UTF_8));
+        digest.update((byte) (optimized ? 1 : 0));
+        digest.update(text, 0, length);
+        return ByteBuffer.wrap(digest.digest());
+    }
+
+    /**
+     * Reads the bytes of the chunk from the previous file, and keeps them in the new one. Bytes that fail their
+     * checksum are dropped.
+     *
+     * @return the cached bytes of the chunk, or null
+     */
+    byte[] get(ByteBuffer hash) throws IOException {
+        Entry entry = entries.get(hash);
+
+        if (entry == null || entry.offset == NOT_IN_PREVIOUS) {
+            return null;
+        }
+
+        byte[] encoded = new byte[entry.length];
+        read(entry.offset, encoded);
+
+        if (crc(encoded) != entry.crc) {
+            entries.remove(hash);
+            return null;
+        }
+
+        save(entry, encoded);
+        return encoded;
+    }
+
+    /**
+     * Reads the bytes at the offset of the previous file, moving the window there if they are not in it.
+     */
+    private void read(long offset, byte[] bytes) throws IOException {
+        if (bytes.length > WINDOW_SIZE) {
+            readFully(previousFile, ByteBuffer.wrap(bytes), offset);
+            return;
+        }
+
+        if (offset < windowOffset || offset + bytes.length > windowOffset + window.limit()) {
+            window.clear();
+
+            while (window.hasRemaining()) {
+                if (previousFile.read(window, offset + window.position()) < 0) {
+                    break;
+                }
+            }
+
+            window.flip();
+            windowOffset = offset;
+
+            if (window.limit() < bytes.length) {
+                throw new EOFException();
+            }
+        }
+
+        System.arraycopy(window.array(), (int) (offset - windowOffset), bytes, 0, bytes.length);
+    }
+
+    /**
+     * Writes the bytes of the chunk to the new file, unless they are there already.
+     */
+    void put(ByteBuffer hash, byte[] encoded) throws IOException {
+        Entry entry = entries.get(hash);
+
+        if (entry == null) {
+            entry = new Entry(hash.array(), NOT_IN_PREVIOUS, encoded.length, crc(encoded));
+            entries.put(hash, entry);
+        }
+
+        save(entry, encoded);
+    }
+
+    private int crc(byte[] bytes) {
+        checksum.reset();
+        checksum.update(bytes, 0, bytes.length);
+        return (int) checksum.getValue();
+    }
+
+    private void save(Entry entry, byte[] encoded) throws IOException {
+        if (!entry.saved) {
+            data.write(encoded);
+            saved.add(entry);
+            entry.saved = true;
+        }
+    }
+
+    /**
+     * Writes the index of the new file, and replaces the previous file with it.
+     */
+    void save() throws IOException {
+        for (Entry entry : saved) {
+            data.write(entry.hash);
+            data.writeInt(entry.length);
+            data.writeInt(entry.crc);
+        }
+
+        data.writeInt(saved.size());
+        data.flush();
+        close(previousFile);
+        out.commit();
+    }
+
+    /**
+     * Discards the new file unless it is saved.
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            close(previousFile);
+        } finally {
+            out.close();
+        }
+    }
+
+    private static void close(FileChannel channel) throws IOException {
+        if (channel != null) {
+            channel.close();
+        }
+    }
+
+    /**
+     * A chunk of the previous file or of this run, and whether its bytes are in the new file yet.
+     */
+    private static final class Entry {
+
+        private final byte[] hash;
+        private final long offset;
+        private final int length;
+        private final int crc;
+        private boolean saved;
+
+        /**
+         * @param offset where the bytes are in the previous file, or {@link #NOT_IN_PREVIOUS}
+         */
+        Entry(byte[] hash, long offset, int length, int crc) {
+            this.hash = hash;
+            this.offset = offset;
+            this.length = length;
+            this.crc = crc;
+        }
+    }
+}
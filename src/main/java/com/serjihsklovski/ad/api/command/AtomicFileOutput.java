@@ -0,0 +1,139 @@
+package com.serjihsklovski.ad.api.command;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.PosixFileAttributeView;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * A buffered output stream over a temporary file next to the target. The target is replaced
+ * only by {@link #commit()}; closing an uncommitted output discards the temporary file.
+ * <p>
+ * The temporary file is created with the default permissions, as the target itself would be, and takes over the
+ * permissions of a target it replaces.
+ * <p>
+ * The standard output, `-`, is written straight through instead, so what is written may flow on before the
+ * commit, and a failing run leaves what it has already flushed. A compressed output is deflated on a thread of
+ * its own as it is written.
+ */
+class AtomicFileOutput implements Closeable {
+
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private final Path target;
+    private final Path temp;
+    private final OutputStream stream;
+    private boolean committed;
+
+    AtomicFileOutput(Path target) throws IOException {
+        this(target, false);
+    }
+
+    /**
+     * @param compressed whether to write the output gzip-compressed
+     */
+    AtomicFileOutput(Path target, boolean compressed) throws IOException {
+        OutputStream out;
+
+        if (StandardStreams.isStandard(target)) {
+            this.target = null;
+            this.temp = null;
+            out = StandardStreams.newOutputStream();
+        } else {
+            Path path;
+
+            this.target = target.toAbsolutePath();
+
+            do {
+                path = getTempPath(this.target);
+                out = createFile(path);
+            } while (out == null);
+
+            this.temp = path;
+        }
+
+        this.stream = compressed
+                ? CompressedStreams.newDeflatingStream(out)
+                : new BufferedOutputStream(out, BUFFER_SIZE);
+    }
+
+    /**
+     * @return a random path for a temporary file next to the target, which may already be taken
+     */
+    private static Path getTempPath(Path target) {
+        String suffix = Long.toUnsignedString(ThreadLocalRandom.current().nextLong(), Character.MAX_RADIX);
+        return target.resolveSibling("." + target.getFileName() + "." + suffix + ".tmp");
+    }
+
+    /**
+     * @return a stream to the file, created with the permissions the umask leaves to a new file rather than the
+     * owner-only ones of {@link Files#createTempFile}, or null if the path is taken
+     */
+    private static OutputStream createFile(Path path) throws IOException {
+        try {
+            return Files.newOutputStream(path, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+        } catch (FileAlreadyExistsException faee) {
+            return null;
+        }
+    }
+
+    OutputStream getStream() {
+        return stream;
+    }
+
+    void commit() throws IOException {
+        stream.close();
+
+        if (temp == null) {
+            committed = true;
+            return;
+        }
+
+        copyPermissions();
+
+        try {
+            Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException amnse) {
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+
+        committed = true;
+    }
+
+    /**
+     * Gives the temporary file the POSIX permissions of the target it is about to replace, if any.
+     */
+    private void copyPermissions() throws IOException {
+        PosixFileAttributeView targetView = Files.getFileAttributeView(target, PosixFileAttributeView.class);
+
+        if (targetView != null && Files.exists(target)) {
+            Files.getFileAttributeView(temp, PosixFileAttributeView.class)
+                    .setPermissions(targetView.readAttributes().permissions());
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (committed) {
+            return;
+        }
+
+        if (temp == null) {
+            return;
+        }
+
+        try {
+            stream.close();
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+}
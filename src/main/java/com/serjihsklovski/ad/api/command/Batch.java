@@ -0,0 +1,254 @@
+package com.serjihsklovski.ad.api.command;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * The inputs of a `-batch` run: the files with the command's input extension under a directory, hidden ones
+ * aside, the files matching a glob, or the files listed in a manifest given as `@<path>`, one per line. Each
+ * output is written under the output directory at the path of its input relative to the directory, the glob's
+ * static prefix or the manifest's directory, with the extension replaced; two inputs with the same output fail
+ * the run before any file is converted.
+ */
+final class Batch {
+
+    private static final String GLOB_CHARS = "*?[{";
+    private static final String MANIFEST_PREFIX = "@";
+    private static final String MANIFEST_COMMENT = "#";
+    private static final String HIDDEN_PREFIX = ".";
+
+    private static final String EXCEPTION_MSG_FAILED_FILES = "%d of %d files failed:%s";
+    private static final String EXCEPTION_MSG_SAME_OUTPUT = "`%s` and `%s` - inputs with the same output `%s`!";
+    private static final String EXCEPTION_MSG_NO_FILES = "`%s` - no input files!";
+    private static final String EXCEPTION_MSG_STANDARD_STREAM = "A standard stream cannot be used in the batch mode!";
+
+    /**
+     * Converts a single file; it must not keep any state between files, as files are converted concurrently.
+     */
+    interface FileJob {
+
+        void process(Path input, Path output) throws IOException;
+    }
+
+    private final Path base;
+    private final List<Path> inputs;
+
+    private Batch(Path base, List<Path> inputs) {
+        this.base = base;
+        this.inputs = inputs;
+    }
+
+    /**
+     * @param extension the extension of the inputs taken from a directory, which may be followed by `.gz`
+     */
+    static Batch of(String input, String extension) throws IOException {
+        if (StandardStreams.isStandard(input)) {
+            throw new RuntimeException(EXCEPTION_MSG_STANDARD_STREAM);
+        }
+
+        Batch batch;
+
+        if (input.startsWith(MANIFEST_PREFIX)) {
+            batch = ofManifest(Paths.get(input.substring(MANIFEST_PREFIX.length())));
+        } else if (Files.isDirectory(Paths.get(input))) {
+            batch = ofDirectory(Paths.get(input), extension);
+        } else {
+            batch = ofGlob(input);
+        }
+
+        if (batch.inputs.isEmpty()) {
+            throw new RuntimeException(String.format(EXCEPTION_MSG_NO_FILES, input));
+        }
+
+        return batch;
+    }
+
+    private static Batch ofManifest(Path manifest) throws IOException {
+        Path base = manifest.toAbsolutePath().getParent();
+        List<Path> inputs = new ArrayList<>();
+
+        for (String line : Files.readAllLines(manifest, StandardCharsets.UTF_8)) {
+            String path = line.trim();
+
+            if (!path.isEmpty() && !path.startsWith(MANIFEST_COMMENT)) {
+                inputs.add(base.resolve(path));
+            }
+        }
+
+        return new Batch(base, inputs);
+    }
+
+    private static Batch ofDirectory(Path directory, String extension) throws IOException {
+        return new Batch(directory, walk(directory, path -> !isHidden(directory.relativize(path))
+                && CompressedStreams.getUncompressedName(path).endsWith(extension)));
+    }
+
+    /**
+     * @return whether any element of the relative path starts with a dot
+     */
+    private static boolean isHidden(Path relative) {
+        for (Path element : relative) {
+            if (element.toString().startsWith(HIDDEN_PREFIX)) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * Walks the directory formed by the leading path elements without glob characters and matches the
+     * rest of the pattern against the paths relative to it.
+     */
+    private static Batch ofGlob(String glob) throws IOException {
+        Path pattern = Paths.get(glob);
+        Path base = (pattern.getRoot() != null) ? pattern.getRoot() : Paths.get("");
+        int staticElements = 0;
+
+        while (staticElements < pattern.getNameCount() - 1 && !hasGlobChars(pattern.getName(staticElements))) {
+            base = base.resolve(pattern.getName(staticElements++));
+        }
+
+        Path root = base;
+        String relativeGlob = pattern.subpath(staticElements, pattern.getNameCount()).toString();
+        PathMatcher matcher = FileSystems.getDefault().getPathMatcher("glob:" + relativeGlob);
+
+        return new Batch(base, walk(base, path -> matcher.matches(root.relativize(path))));
+    }
+
+    private static List<Path> walk(Path directory, PathMatcher matcher) throws IOException {
+        if (!Files.isDirectory(directory)) {
+            return new ArrayList<>();
+        }
+
+        try (Stream<Path> paths = Files.walk(directory)) {
+            return paths
+                    .filter(Files::isRegularFile)
+                    .filter(matcher::matches)
+                    .sorted()
+                    .collect(Collectors.toList());
+        }
+    }
+
+    private static boolean hasGlobChars(Path element) {
+        String name = element.toString();
+
+        for (int i = 0; i < GLOB_CHARS.length(); i++) {
+            if (name.indexOf(GLOB_CHARS.charAt(i)) >= 0) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * Converts the files on a pool of {@code threads} workers. A failing file does not stop the others;
+     * the failures are reported together, in input order, once all files are done.
+     */
+    void run(Path outputDirectory, String extension, int threads, RunStats stats, FileJob job) throws IOException {
+        if (StandardStreams.isStandard(outputDirectory)) {
+            throw new RuntimeException(EXCEPTION_MSG_STANDARD_STREAM);
+        }
+
+        List<Path> outputs = getOutputs(outputDirectory, extension);
+        ExecutorService executor = stats.newThreadPool(threads);
+        List<Future<?>> results = new ArrayList<>(inputs.size());
+
+        try {
+            for (int i = 0; i < inputs.size(); i++) {
+                Path input = inputs.get(i);
+                Path output = outputs.get(i);
+
+                results.add(executor.submit(() -> {
+                    Files.createDirectories(output.toAbsolutePath().getParent());
+                    job.process(input, output);
+                    return null;
+                }));
+            }
+
+            StringBuilder failures = new StringBuilder();
+            int failed = 0;
+
+            for (int i = 0; i < inputs.size(); i++) {
+                String failure = getFailure(results.get(i));
+
+                if (failure != null) {
+                    failures.append(System.lineSeparator()).append(inputs.get(i)).append(": ").append(failure);
+                    failed++;
+                }
+            }
+
+            if (failed > 0) {
+                throw new RuntimeException(String.format(EXCEPTION_MSG_FAILED_FILES, failed, inputs.size(), failures));
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * @return the outputs of the inputs, in input order
+     */
+    private List<Path> getOutputs(Path outputDirectory, String extension) {
+        Map<Path, Path> inputsByOutput = new HashMap<>();
+        List<Path> outputs = new ArrayList<>(inputs.size());
+
+        for (Path input : inputs) {
+            Path output = getOutput(outputDirectory, input, extension);
+            Path other = inputsByOutput.put(output.toAbsolutePath().normalize(), input);
+
+            if (other != null) {
+                throw new RuntimeException(String.format(EXCEPTION_MSG_SAME_OUTPUT, other, input, output));
+            }
+
+            outputs.add(output);
+        }
+
+        return outputs;
+    }
+
+    private Path getOutput(Path outputDirectory, Path input, String extension) {
+        Path absoluteBase = base.toAbsolutePath().normalize();
+        Path absoluteInput = input.toAbsolutePath().normalize();
+        Path relative = absoluteInput.startsWith(absoluteBase)
+                ? absoluteBase.relativize(absoluteInput)
+                : absoluteInput.getFileName();
+
+        String name = CompressedStreams.getUncompressedName(relative);
+        int dot = name.lastIndexOf('.');
+        String outputName = ((dot > 0) ? name.substring(0, dot) : name) + extension;
+
+        return outputDirectory.resolve(relative).resolveSibling(outputName);
+    }
+
+    /**
+     * @return the message of the file's failure, or null if it was converted
+     */
+    private static String getFailure(Future<?> result) {
+        try {
+            result.get();
+            return null;
+        } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(ie);
+        } catch (ExecutionException ee) {
+            Throwable cause = ee.getCause();
+            return (cause instanceof RuntimeException) ? cause.getMessage() : cause.toString();
+        }
+    }
+}
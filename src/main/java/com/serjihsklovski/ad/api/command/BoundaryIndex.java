@@ -0,0 +1,192 @@
+package com.serjihsklovski.ad.api.command;
+
+import com.serjihsklovski.ad.component.Instruction;
+import com.serjihsklovski.ad.component.disassembler.Disassembler;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.function.Consumer;
+
+/**
+ * Known instruction boundaries of a binary, sampled every {@link #SAMPLE_INTERVAL} bytes and kept in a sidecar
+ * file: entry {@code k} is the first boundary at or after {@code k * SAMPLE_INTERVAL}, the first one being 0.
+ * A decoding may start from the boundary nearest before any offset instead of from the beginning of the binary.
+ * The file records the size and modification time of the binary, and an index that does not match them is
+ * built again.
+ * <p>
+ * A binary with an invalid or incomplete instruction is indexed up to it: the boundaries before it stay usable,
+ * and only a decoding that reaches it fails.
+ */
+final class BoundaryIndex {
+
+    private static final int MAGIC = 0x41444932;
+    private static final int SAMPLE_INTERVAL = 1 << 16;
+    private static final long MAP_WINDOW_SIZE = 1L << 28;
+
+    private static final Consumer<Instruction> SKIP = instruction -> {
+    };
+
+    private final long size;
+    private final long modified;
+    private final long decodable;
+    private final long[] boundaries;
+
+    private BoundaryIndex(long size, long modified, long decodable, long[] boundaries) {
+        this.size = size;
+        this.modified = modified;
+        this.decodable = decodable;
+        this.boundaries = boundaries;
+    }
+
+    /**
+     * @return the index of the binary kept in the file, which is built and saved first unless it is up to date
+     */
+    static BoundaryIndex of(Path file, Path binary, Disassembler disassembler) throws IOException {
+        long size = Files.size(binary);
+        long modified = Files.getLastModifiedTime(binary).toMillis();
+        BoundaryIndex index = load(file);
+
+        if (index == null || index.size != size || index.modified != modified) {
+            index = build(binary, size, modified, disassembler);
+            index.save(file);
+        }
+
+        return index;
+    }
+
+    /**
+     * @return the offset of the first invalid or incomplete instruction, or the size of the binary if there is none
+     */
+    long getDecodableSize() {
+        return decodable;
+    }
+
+    /**
+     * @return the last known instruction boundary at or before the offset
+     */
+    long getBoundaryAtOrBefore(long offset) {
+        int k = (int) Math.min(offset / SAMPLE_INTERVAL, boundaries.length - 1);
+
+        while (k > 0 && boundaries[k] > offset) {
+            k--;
+        }
+
+        return (k >= 0) ? boundaries[k] : 0;
+    }
+
+    private static BoundaryIndex load(Path file) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            if (in.readInt() != MAGIC || in.readInt() != SAMPLE_INTERVAL) {
+                return null;
+            }
+
+            long size = in.readLong();
+            long modified = in.readLong();
+            long decodable = in.readLong();
+            int count = in.readInt();
+
+            if (decodable < 0 || decodable > size || count < 0 || count > getSampleCount(size)) {
+                return null;
+            }
+
+            long[] boundaries = new long[count];
+
+            for (int i = 0; i < count; i++) {
+                boundaries[i] = in.readLong();
+            }
+
+            return new BoundaryIndex(size, modified, decodable, boundaries);
+        } catch (NoSuchFileException | EOFException ignored) {
+            return null;
+        }
+    }
+
+    private void save(Path file) throws IOException {
+        try (AtomicFileOutput out = new AtomicFileOutput(file)) {
+            DataOutputStream data = new DataOutputStream(out.getStream());
+
+            data.writeInt(MAGIC);
+            data.writeInt(SAMPLE_INTERVAL);
+            data.writeLong(size);
+            data.writeLong(modified);
+            data.writeLong(decodable);
+            data.writeInt(boundaries.length);
+
+            for (long boundary : boundaries) {
+                data.writeLong(boundary);
+            }
+
+            data.flush();
+            out.commit();
+        }
+    }
+
+    /**
+     * Decodes the whole binary once, through memory-mapped windows, recording the boundaries up to the first
+     * invalid or incomplete instruction.
+     */
+    private static BoundaryIndex build(Path binary, long size, long modified, Disassembler disassembler)
+            throws IOException {
+        long[] boundaries = new long[getSampleCount(size)];
+        int samples = 0;
+        long position = 0;
+
+        try (FileChannel channel = FileChannel.open(binary, StandardOpenOption.READ)) {
+            while (position < size) {
+                long windowSize = Math.min(MAP_WINDOW_SIZE, size - position);
+                MappedByteBuffer window = channel.map(FileChannel.MapMode.READ_ONLY, position, windowSize);
+                int index = 0;
+                int length = 0;
+
+                while (index < windowSize) {
+                    while (samples < boundaries.length && (long) samples * SAMPLE_INTERVAL <= position + index) {
+                        boundaries[samples++] = position + index;
+                    }
+
+                    length = skipInstruction(disassembler, window, index);
+
+                    if (length <= 0) {
+                        break;
+                    }
+
+                    index += length;
+                }
+
+                boolean failed = length < 0 || (index < windowSize && position + windowSize == size);
+                position += index;
+
+                if (failed) {
+                    break;
+                }
+            }
+        }
+
+        return new BoundaryIndex(size, modified, position, Arrays.copyOf(boundaries, samples));
+    }
+
+    /**
+     * @return the length of the instruction, 0 if it does not fit into the window, or -1 if it is invalid
+     */
+    private static int skipInstruction(Disassembler disassembler, ByteBuffer window, int index) {
+        try {
+            return disassembler.disassembleInstruction(window, index, SKIP);
+        } catch (RuntimeException re) {
+            return -1;
+        }
+    }
+
+    private static int getSampleCount(long size) {
+        return (int) ((size + SAMPLE_INTERVAL - 1) / SAMPLE_INTERVAL);
+    }
+}
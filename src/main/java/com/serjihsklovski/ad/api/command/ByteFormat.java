@@ -0,0 +1,32 @@
+package com.serjihsklovski.ad.api.command;
+
+import org.apache.commons.cli.CommandLine;
+
+/**
+ * The representation of machine code on disk: hex text or raw bytes.
+ */
+enum ByteFormat {
+    HEX,
+    BIN;
+
+    private static final String EXCEPTION_MSG_UNSUPPORTED_FORMAT = "`%s` - an unsupported format!";
+
+    /**
+     * @return the file extension of machine code in this format
+     */
+    String getExtension() {
+        return "." + name().toLowerCase();
+    }
+
+    static ByteFormat of(CommandLine cmd) {
+        String format = cmd.getOptionValue("format", "hex");
+
+        for (ByteFormat byteFormat : values()) {
+            if (byteFormat.name().equalsIgnoreCase(format)) {
+                return byteFormat;
+            }
+        }
+
+        throw new RuntimeException(String.format(EXCEPTION_MSG_UNSUPPORTED_FORMAT, format));
+    }
+}
@@ -2,7 +2,9 @@ package com.serjihsklovski.ad.api.command;
 
 import org.apache.commons.cli.CommandLine;
 
+import java.io.IOException;
+
 public interface Command {
 
-    void execute(CommandLine cmd);
+    void execute(CommandLine cmd) throws IOException;
 }
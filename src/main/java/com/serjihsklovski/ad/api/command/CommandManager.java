@@ -4,33 +4,50 @@ import org.apache.commons.cli.CommandLine;
 import org.apache.commons.cli.Option;
 import org.apache.commons.cli.Options;
 
-import java.io.FileReader;
-import java.io.IOException;
-import java.util.HashMap;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
-import java.util.Optional;
-import java.util.Properties;
+import java.util.function.Supplier;
 
 public class CommandManager {
 
     private static final String EXCEPTION_MSG_ONLY_ONE_COMMAND = "you cannot choose more than 1 command!";
     private static final String EXCEPTION_MSG_COMMAND_NOT_EXIST = "this command does not exist!";
-    private static Map<String, Class<? extends Command>> commands;
+
+    /**
+     * Every command by its option name; resolved at compile time, so the startup neither reads a file nor
+     * loads classes reflectively.
+     */
+    private static final Map<String, Supplier<Command>> COMMANDS = new LinkedHashMap<>();
+
+    /**
+     * The options whose value is a file or directory path.
+     */
+    public static final List<String> PATH_OPTIONS = Collections.unmodifiableList(
+            Arrays.asList("input", "output", "cache", "stats", "index"));
+
+    static {
+        COMMANDS.put("assemble", AssembleCommand::new);
+        COMMANDS.put("disassemble", DisassembleCommand::new);
+        COMMANDS.put("serve", ServeCommand::new);
+    }
 
     public static Command forName(String commandName) {
-        try {
-            return Optional.ofNullable(commands.getOrDefault(commandName, null))
-                    .orElseThrow(() -> new RuntimeException(EXCEPTION_MSG_COMMAND_NOT_EXIST))
-                    .newInstance();
-        } catch (IllegalAccessException | InstantiationException e) {
-            throw new RuntimeException(e);
+        Supplier<Command> command = (commandName != null) ? COMMANDS.get(commandName) : null;
+
+        if (command == null) {
+            throw new RuntimeException(EXCEPTION_MSG_COMMAND_NOT_EXIST);
         }
+
+        return command.get();
     }
 
     public static String determineCommand(CommandLine cmd) {
         String command = null;
 
-        for (String c : commands.keySet()) {
+        for (String c : COMMANDS.keySet()) {
             if (cmd.hasOption(c)) {
                 if (command != null) {
                     throw new RuntimeException(EXCEPTION_MSG_ONLY_ONE_COMMAND);
@@ -43,45 +60,27 @@ public class CommandManager {
         return command;
     }
 
-    private static void registerCommands() {
-        Properties commandsProperties = new Properties();
-
-        try {
-            commandsProperties.load(new FileReader("./src/main/resources/commands.properties"));
-        } catch (IOException ioe) {
-            throw new RuntimeException(ioe);
-        }
-
-        commandsProperties.stringPropertyNames().forEach(commandName -> {
-            String commandClassName = commandsProperties.getProperty(commandName);
-
-            try {
-                Class commandClass = Class.forName(commandClassName);
-
-                if (Command.class.isAssignableFrom(commandClass)) {
-                    commands.put(commandName, commandClass);
-                }
-            } catch (ClassNotFoundException cnfe) {
-                throw new RuntimeException(cnfe);
-            }
-        });
-    }
-
     public static Options prepareOptions() {
         Options options = new Options();
 
-        commands.keySet().stream()
-                .map(command -> new Option(command, false, ""))
-                .forEach(options::addOption);
+        for (String command : COMMANDS.keySet()) {
+            options.addOption(new Option(command, false, ""));
+        }
 
         options.addOption("input", true, "");
         options.addOption("output", true, "");
+        options.addOption("format", true, "");
+        options.addOption("threads", true, "");
+        options.addOption("port", true, "");
+        options.addOption("batch", false, "");
+        options.addOption("cache", true, "");
+        options.addOption("memo", true, "");
+        options.addOption("optimize", false, "");
+        options.addOption("stats", true, "");
+        options.addOption("gzip", false, "");
+        options.addOption("index", true, "");
+        options.addOption("range", true, "");
 
         return options;
     }
-
-    static {
-        commands = new HashMap<>();
-        registerCommands();
-    }
 }
@@ -0,0 +1,127 @@
+package com.serjihsklovski.ad.api.command;
+
+import com.serjihsklovski.ad.api.server.ServerProtocol;
+import org.apache.commons.cli.CommandLine;
+
+/**
+ * Values of the options shared by the commands.
+ */
+final class CommandOptions {
+
+    private static final String EXCEPTION_MSG_INVALID_THREADS = "`%s` - an invalid number of threads!";
+    private static final String EXCEPTION_MSG_INVALID_PORT = "`%s` - an invalid port!";
+    private static final String EXCEPTION_MSG_INVALID_MEMO = "`%s` - an invalid memo capacity!";
+    private static final String EXCEPTION_MSG_INVALID_RANGE = "`%s` - an invalid range!";
+
+    private static final String RANGE_SEPARATOR = ":";
+    private static final String HEX_PREFIX = "0x";
+
+    private static final int DEFAULT_MEMO_CAPACITY = 1 << 12;
+
+    private CommandOptions() {
+    }
+
+    static int getThreads(CommandLine cmd) {
+        String threads = cmd.getOptionValue("threads", "1");
+
+        try {
+            int n = Integer.parseInt(threads);
+
+            if (n > 0) {
+                return n;
+            }
+        } catch (NumberFormatException ignored) {
+        }
+
+        throw new RuntimeException(String.format(EXCEPTION_MSG_INVALID_THREADS, threads));
+    }
+
+    static int getPort(CommandLine cmd) {
+        String port = cmd.getOptionValue("port", Integer.toString(ServerProtocol.DEFAULT_PORT));
+
+        try {
+            int n = Integer.parseInt(port);
+
+            if (n >= 0 && n <= 0xffff) {
+                return n;
+            }
+        } catch (NumberFormatException ignored) {
+        }
+
+        throw new RuntimeException(String.format(EXCEPTION_MSG_INVALID_PORT, port));
+    }
+
+    /**
+     * @return the number of entries of each memo cache; 0 disables memoization
+     */
+    static int getMemoCapacity(CommandLine cmd) {
+        String capacity = cmd.getOptionValue("memo", Integer.toString(DEFAULT_MEMO_CAPACITY));
+
+        try {
+            int n = Integer.parseInt(capacity);
+
+            if (n >= 0) {
+                return n;
+            }
+        } catch (NumberFormatException ignored) {
+        }
+
+        throw new RuntimeException(String.format(EXCEPTION_MSG_INVALID_MEMO, capacity));
+    }
+
+    /**
+     * @return the byte range given as `offset:length`, each decimal or `0x`-prefixed hex, or null without `-range`
+     */
+    static Range getRange(CommandLine cmd) {
+        if (!cmd.hasOption("range")) {
+            return null;
+        }
+
+        String range = cmd.getOptionValue("range");
+        String[] parts = range.split(RANGE_SEPARATOR, -1);
+
+        try {
+            if (parts.length == 2) {
+                long offset = parseLong(parts[0]);
+                long length = parseLong(parts[1]);
+
+                if (offset >= 0 && length >= 0 && offset + length >= offset) {
+                    return new Range(offset, length);
+                }
+            }
+        } catch (NumberFormatException ignored) {
+        }
+
+        throw new RuntimeException(String.format(EXCEPTION_MSG_INVALID_RANGE, range));
+    }
+
+    private static long parseLong(String value) {
+        String trimmed = value.trim().toLowerCase();
+
+        return trimmed.startsWith(HEX_PREFIX)
+                ? Long.parseLong(trimmed.substring(HEX_PREFIX.length()), 16)
+                : Long.parseLong(trimmed);
+    }
+
+    /**
+     * A range of bytes of an input.
+     */
+    static final class Range {
+
+        private final long offset;
+        private final long length;
+
+        Range(long offset, long length) {
+            this.offset = offset;
+            this.length = length;
+        }
+
+        long getOffset() {
+            return offset;
+        }
+
+        long getEnd() {
+            return offset + length;
+        }
+    }
+}
@@ -0,0 +1,386 @@
+package com.serjihsklovski.ad.api.command;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Gzip-compressed inputs and outputs. The deflating and inflating run on a thread of their own, which passes
+ * blocks through bounded queues to and from the converting thread, so the compression overlaps with the
+ * encoding and decoding; a fixed set of blocks is recycled, bounding the memory either way.
+ */
+final class CompressedStreams {
+
+    static final String EXTENSION = ".gz";
+
+    private static final int BLOCK_SIZE = 1 << 18;
+    private static final int DEFLATE_BUFFER_SIZE = 1 << 16;
+    private static final int PENDING_BLOCKS = 4;
+
+    private CompressedStreams() {
+    }
+
+    /**
+     * @return whether the file's name ends with `.gz`
+     */
+    static boolean isCompressed(Path path) {
+        Path name = path.getFileName();
+        return name != null && name.toString().endsWith(EXTENSION);
+    }
+
+    /**
+     * @return the file name without a trailing `.gz`
+     */
+    static String getUncompressedName(Path path) {
+        String name = path.getFileName().toString();
+        return isCompressed(path) ? name.substring(0, name.length() - EXTENSION.length()) : name;
+    }
+
+    /**
+     * @return the input, inflated if it is compressed
+     */
+    static InputStream newInputStream(Path input) throws IOException {
+        InputStream in = StandardStreams.newInputStream(input);
+        return isCompressed(input) ? new InflatingInputStream(in) : in;
+    }
+
+    /**
+     * @return a reader of the UTF-8 text of the input, inflated if it is compressed
+     */
+    static BufferedReader newBufferedReader(Path input) throws IOException {
+        if (!isCompressed(input)) {
+            return StandardStreams.newBufferedReader(input);
+        }
+
+        return new BufferedReader(new InputStreamReader(newInputStream(input), StandardCharsets.UTF_8));
+    }
+
+    /**
+     * @return a stream deflating into {@code out}, which it closes when closed
+     */
+    static OutputStream newDeflatingStream(OutputStream out) {
+        return new DeflatingOutputStream(out);
+    }
+
+    private static final class Block {
+
+        private final byte[] data = new byte[BLOCK_SIZE];
+        private int length;
+    }
+
+    /**
+     * @return the blocks of a stream: one more than can be pending, so neither side waits for a free one
+     * while the other still holds one
+     */
+    private static BlockingQueue<Block> newFreeBlocks() {
+        BlockingQueue<Block> free = new ArrayBlockingQueue<>(PENDING_BLOCKS + 1);
+
+        for (int i = 0; i < PENDING_BLOCKS + 1; i++) {
+            free.add(new Block());
+        }
+
+        return free;
+    }
+
+    private static Block takeFree(BlockingQueue<Block> free) throws InterruptedIOException {
+        try {
+            Block block = free.take();
+            block.length = 0;
+            return block;
+        } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException();
+        }
+    }
+
+    /**
+     * Fills blocks and passes them to a thread deflating them into the underlying stream. A failure of the
+     * thread is rethrown by the next write, flush or close.
+     */
+    private static final class DeflatingOutputStream extends OutputStream {
+
+        private final PipelineQueue<Block> full = new PipelineQueue<>(PENDING_BLOCKS, null);
+        private final BlockingQueue<Block> free = newFreeBlocks();
+        private final Thread deflater;
+        private volatile IOException failure;
+        private Block block;
+        private boolean closed;
+
+        DeflatingOutputStream(OutputStream out) {
+            deflater = new Thread(() -> deflate(out), "gzip-deflater");
+            deflater.setDaemon(true);
+            deflater.start();
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            if (block == null || block.length == BLOCK_SIZE) {
+                nextBlock();
+            }
+
+            block.data[block.length++] = (byte) b;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            while (len > 0) {
+                if (block == null || block.length == BLOCK_SIZE) {
+                    nextBlock();
+                }
+
+                int n = Math.min(len, BLOCK_SIZE - block.length);
+                System.arraycopy(b, off, block.data, block.length, n);
+                block.length += n;
+                off += n;
+                len -= n;
+            }
+        }
+
+        /**
+         * Passes the bytes written so far on to the deflater.
+         */
+        @Override
+        public void flush() throws IOException {
+            if (block != null && block.length > 0) {
+                passBlock();
+            }
+
+            checkFailure();
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (closed) {
+                return;
+            }
+
+            closed = true;
+
+            try {
+                if (block != null && block.length > 0 && failure == null) {
+                    full.put(block);
+                }
+
+                full.close();
+                deflater.join();
+            } catch (InterruptedException ie) {
+                deflater.interrupt();
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException();
+            }
+
+            checkFailure();
+        }
+
+        private void nextBlock() throws IOException {
+            if (block != null) {
+                passBlock();
+            }
+
+            block = takeFree(free);
+            checkFailure();
+        }
+
+        private void passBlock() throws IOException {
+            checkFailure();
+
+            try {
+                full.put(block);
+            } catch (InterruptedException ie) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException();
+            }
+
+            block = null;
+        }
+
+        private void checkFailure() throws IOException {
+            if (failure != null) {
+                throw failure;
+            }
+        }
+
+        /**
+         * Keeps recycling the blocks after a failure, so the writing thread never waits for a free one.
+         */
+        private void deflate(OutputStream out) {
+            OutputStream gzip = out;
+
+            try {
+                try {
+                    gzip = new FastGZIPOutputStream(out);
+                } catch (IOException ioe) {
+                    failure = ioe;
+                }
+
+                Block next;
+
+                while ((next = full.take()) != null) {
+                    if (failure == null) {
+                        try {
+                            gzip.write(next.data, 0, next.length);
+                        } catch (IOException ioe) {
+                            failure = ioe;
+                        }
+                    }
+
+                    free.add(next);
+                }
+            } catch (InterruptedException ie) {
+                failure = new InterruptedIOException();
+            } finally {
+                try {
+                    gzip.close();
+                } catch (IOException ioe) {
+                    if (failure == null) {
+                        failure = ioe;
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Deflates at the fastest level: hex and assembly text still shrink to well under half, at several times the
+     * speed of the default level, which would otherwise hold the conversion back.
+     */
+    private static final class FastGZIPOutputStream extends GZIPOutputStream {
+
+        FastGZIPOutputStream(OutputStream out) throws IOException {
+            super(out, DEFLATE_BUFFER_SIZE);
+            def.setLevel(Deflater.BEST_SPEED);
+        }
+    }
+
+    /**
+     * Reads blocks a thread inflates from the underlying stream ahead of the reader. Closing the stream stops
+     * the thread and closes the underlying stream.
+     */
+    private static final class InflatingInputStream extends InputStream {
+
+        private final PipelineQueue<Block> full = new PipelineQueue<>(PENDING_BLOCKS, null);
+        private final BlockingQueue<Block> free = newFreeBlocks();
+        private final Thread inflater;
+        private volatile IOException failure;
+        private Block block;
+        private int position;
+        private boolean ended;
+
+        InflatingInputStream(InputStream in) {
+            inflater = new Thread(() -> inflate(in), "gzip-inflater");
+            inflater.setDaemon(true);
+            inflater.start();
+        }
+
+        @Override
+        public int read() throws IOException {
+            if (!hasBytes()) {
+                return -1;
+            }
+
+            return block.data[position++] & 0xff;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (len == 0) {
+                return 0;
+            }
+
+            if (!hasBytes()) {
+                return -1;
+            }
+
+            int n = Math.min(len, block.length - position);
+            System.arraycopy(block.data, position, b, off, n);
+            position += n;
+            return n;
+        }
+
+        @Override
+        public void close() throws IOException {
+            inflater.interrupt();
+
+            try {
+                inflater.join();
+            } catch (InterruptedException ie) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException();
+            }
+        }
+
+        /**
+         * @return whether there are bytes left to read, after taking the next block if the current one is done
+         */
+        private boolean hasBytes() throws IOException {
+            while (!ended && (block == null || position == block.length)) {
+                if (block != null) {
+                    free.add(block);
+                }
+
+                try {
+                    block = full.take();
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException();
+                }
+
+                position = 0;
+                ended = block == null;
+            }
+
+            if (failure != null) {
+                throw failure;
+            }
+
+            return !ended;
+        }
+
+        /**
+         * Closes the queue of full blocks at the end of the input or at a failure, which is set before.
+         */
+        private void inflate(InputStream in) {
+            try (InputStream gzip = new GZIPInputStream(in, DEFLATE_BUFFER_SIZE)) {
+                int read = 0;
+
+                while (read >= 0) {
+                    Block next = takeFree(free);
+
+                    while (next.length < BLOCK_SIZE
+                            && (read = gzip.read(next.data, next.length, BLOCK_SIZE - next.length)) > 0) {
+                        next.length += read;
+                    }
+
+                    if (next.length > 0) {
+                        full.put(next);
+                    }
+                }
+
+                full.close();
+            } catch (IOException ioe) {
+                failure = ioe;
+                closeQuietly();
+            } catch (InterruptedException ie) {
+                // the reader has closed the stream
+            }
+        }
+
+        private void closeQuietly() {
+            try {
+                full.close();
+            } catch (InterruptedException ignored) {
+                // the reader has closed the stream
+            }
+        }
+    }
+}
@@ -1,58 +1,546 @@
 package com.serjihsklovski.ad.api.command;
 
+import com.serjihsklovski.ad.component.Instruction;
 import com.serjihsklovski.ad.component.disassembler.AsmX86DisassemblerImpl;
 import com.serjihsklovski.ad.component.disassembler.Disassembler;
 import com.serjihsklovski.ad.component.parser.AsmX86ParserImpl;
 import com.serjihsklovski.ad.component.parser.Parser;
 import org.apache.commons.cli.CommandLine;
 
+import java.io.BufferedReader;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.charset.StandardCharsets;
-import java.nio.file.Files;
+import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
 
 public class DisassembleCommand implements Command {
 
+    private static final int CHUNK_SIZE = 1 << 16;
+    private static final long MAP_WINDOW_SIZE = 1L << 28;
+    private static final int REGION_SIZE = 1 << 18;
+    private static final int PENDING_REGIONS_PER_THREAD = 4;
+
+    private static final String SOURCE_EXTENSION = ".asm";
+
+    private static final String EXCEPTION_MSG_INCOMPLETE_INSTRUCTION = "An incomplete instruction!";
+    private static final String EXCEPTION_MSG_UNDECODABLE_RANGE =
+            "`%d` - the range reaches an invalid or incomplete instruction at this offset!";
+    private static final String EXCEPTION_MSG_RANGE_IN_BATCH = "A range or an index cannot be used in the batch mode!";
+    private static final String EXCEPTION_MSG_RANGE_NOT_MAPPED =
+            "A range or an index needs an uncompressed binary file!";
+
     private Parser parser = new AsmX86ParserImpl();
     private Disassembler disassembler = new AsmX86DisassemblerImpl();
 
     @Override
-    public void execute(CommandLine cmd) {
-        String input = cmd.getOptionValue("input");
-        String output = cmd.getOptionValue("output");
+    public void execute(CommandLine cmd) throws IOException {
+        ByteFormat format = ByteFormat.of(cmd);
+        int threads = CommandOptions.getThreads(cmd);
+        MemoCache<Long, String> memo = new MemoCache<>(CommandOptions.getMemoCapacity(cmd));
+        RunStats stats = RunStats.of("disassemble", cmd);
+        Path output = Paths.get(cmd.getOptionValue("output"));
+        boolean gzip = cmd.hasOption("gzip");
+
+        stats.setMemo(memo);
+
+        if (cmd.hasOption("range") || cmd.hasOption("index")) {
+            Path input = Paths.get(cmd.getOptionValue("input"));
+
+            if (cmd.hasOption("batch")) {
+                throw new RuntimeException(EXCEPTION_MSG_RANGE_IN_BATCH);
+            }
+
+            if (format != ByteFormat.BIN
+                    || StandardStreams.isStandard(input) || CompressedStreams.isCompressed(input)) {
+                throw new RuntimeException(EXCEPTION_MSG_RANGE_NOT_MAPPED);
+            }
+
+            CommandOptions.Range range = CommandOptions.getRange(cmd);
+            BoundaryIndex index = cmd.hasOption("index")
+                    ? BoundaryIndex.of(Paths.get(cmd.getOptionValue("index")), input, disassembler)
+                    : null;
+
+            if (range != null) {
+                writeFile(input, output, gzip, memo, stats, writer -> disassembleRange(input, range, index, writer));
+            } else {
+                disassemble(input, output, gzip, format, threads, memo, stats);
+            }
+        } else if (cmd.hasOption("batch")) {
+            Batch.of(cmd.getOptionValue("input"), format.getExtension()).run(
+                    output, SOURCE_EXTENSION + (gzip ? CompressedStreams.EXTENSION : ""), threads, stats,
+                    (in, out) -> disassemble(in, out, gzip, format, 1, memo, stats));
+        } else {
+            disassemble(Paths.get(cmd.getOptionValue("input")), output, gzip, format, threads, memo, stats);
+        }
+
+        stats.report();
+    }
+
+    /**
+     * @param gzip whether to compress the output even if its name does not end with `.gz`
+     */
+    private void disassemble(Path input, Path output, boolean gzip, ByteFormat format, int threads,
+                             MemoCache<Long, String> memo, RunStats stats) throws IOException {
+        writeFile(input, output, gzip, memo, stats, writer -> {
+            if (format == ByteFormat.BIN
+                    && (StandardStreams.isStandard(input) || CompressedStreams.isCompressed(input))) {
+                disassembleBinaryStream(input, writer);
+            } else if (format == ByteFormat.BIN && threads > 1) {
+                disassembleBinaryParallel(input, writer, threads);
+            } else if (format == ByteFormat.BIN) {
+                disassembleBinary(input, writer);
+            } else {
+                disassembleHex(input, writer);
+            }
+        });
+    }
+
+    /**
+     * Writes the instructions the job decodes from the input to the output.
+     *
+     * @param gzip whether to compress the output even if its name does not end with `.gz`
+     */
+    private void writeFile(Path input, Path output, boolean gzip, MemoCache<Long, String> memo,
+                           RunStats stats, WriterJob job) throws IOException {
+        stats.startFile();
+
+        try (AtomicFileOutput out = new AtomicFileOutput(output, gzip || CompressedStreams.isCompressed(output))) {
+            InstructionWriter writer = new InstructionWriter(
+                    new OutputStreamWriter(out.getStream(), StandardCharsets.UTF_8), memo, stats);
+
+            job.decode(writer);
+            writer.flush();
+            out.commit();
+        }
+
+        stats.addFile(input, output);
+    }
+
+    private void disassembleHex(Path input, InstructionWriter writer) throws IOException {
+        try (BufferedReader reader = CompressedStreams.newBufferedReader(input)) {
+            StringBuilder byteSource = new StringBuilder();
+            char[] chunk = new char[CHUNK_SIZE];
+            int read;
+
+            writer.stats.startLaps();
+
+            while ((read = reader.read(chunk)) != -1) {
+                writer.stats.lap(RunStats.Stage.READ);
+
+                for (int i = 0; i < read; i++) {
+                    if (chunk[i] == '\n' || chunk[i] == '\r') {
+                        disassembleLineEnd(byteSource, writer);
+                    } else {
+                        byteSource.append(chunk[i]);
+                    }
+                }
+
+                if (byteSource.length() >= CHUNK_SIZE) {
+                    disassemblePending(byteSource, writer);
+                }
+            }
+
+            disassembleLineEnd(byteSource, writer);
+        }
+    }
+
+    /**
+     * Decodes the file straight from memory-mapped windows; an instruction crossing a window boundary
+     * is decoded from the beginning of the next window.
+     */
+    private void disassembleBinary(Path input, InstructionWriter writer) throws IOException {
+        try (FileChannel channel = FileChannel.open(input, StandardOpenOption.READ)) {
+            long size = channel.size();
+            long position = 0;
+
+            writer.stats.startLaps();
+
+            while (position < size) {
+                long windowSize = Math.min(MAP_WINDOW_SIZE, size - position);
+                MappedByteBuffer window = channel.map(FileChannel.MapMode.READ_ONLY, position, windowSize);
+                writer.stats.lap(RunStats.Stage.READ);
+
+                writeAll(window, writer);
+
+                if (window.hasRemaining() && position + windowSize == size) {
+                    throw new RuntimeException(EXCEPTION_MSG_INCOMPLETE_INSTRUCTION);
+                }
+
+                position += window.position();
+            }
+        }
+    }
+
+    /**
+     * Decodes a binary that cannot be mapped, such as the standard input or a compressed file, through a heap
+     * buffer; an instruction crossing the end of the buffer is moved to its beginning and completed by the next read.
+     */
+    private void disassembleBinaryStream(Path input, InstructionWriter writer) throws IOException {
+        try (InputStream in = CompressedStreams.newInputStream(input)) {
+            ByteBuffer buffer = ByteBuffer.allocate(CHUNK_SIZE);
+            int read;
+
+            writer.stats.startLaps();
+
+            while ((read = in.read(buffer.array(), buffer.position(), buffer.remaining())) != -1) {
+                writer.stats.lap(RunStats.Stage.READ);
+                buffer.position(buffer.position() + read);
+                buffer.flip();
+                writeAll(buffer, writer);
+                buffer.compact();
+            }
+
+            if (buffer.position() > 0) {
+                throw new RuntimeException(EXCEPTION_MSG_INCOMPLETE_INSTRUCTION);
+            }
+        }
+    }
+
+    /**
+     * Decodes the instructions starting within the range, from the last known boundary before it; without an
+     * index, that is the beginning of the binary. The instructions before the range are decoded only to find
+     * the boundary entering it. A range reaching an instruction the index could not decode fails up front.
+     */
+    private void disassembleRange(Path input, CommandOptions.Range range, BoundaryIndex index,
+                                  InstructionWriter writer) throws IOException {
+        try (FileChannel channel = FileChannel.open(input, StandardOpenOption.READ)) {
+            long size = channel.size();
+            long end = Math.min(range.getEnd(), size);
+            long position = (index != null) ? index.getBoundaryAtOrBefore(range.getOffset()) : 0;
+
+            if (index != null && index.getDecodableSize() < end) {
+                throw new RuntimeException(String.format(EXCEPTION_MSG_UNDECODABLE_RANGE, index.getDecodableSize()));
+            }
+            Consumer<Instruction> skipInstruction = instruction -> {
+            };
+
+            writer.stats.startLaps();
+
+            while (position < end) {
+                long windowSize = Math.min(MAP_WINDOW_SIZE, size - position);
+                MappedByteBuffer window = channel.map(FileChannel.MapMode.READ_ONLY, position, windowSize);
+                int decoded = 0;
+                int length;
+
+                writer.stats.lap(RunStats.Stage.READ);
+
+                while (position + decoded < end && decoded < windowSize
+                        && (length = (position + decoded < range.getOffset())
+                        ? disassembler.disassembleInstruction(window, decoded, skipInstruction)
+                        : writer.write(window, decoded)) > 0) {
+                    decoded += length;
+                }
+
+                if (position + decoded < end && position + windowSize == size) {
+                    throw new RuntimeException(EXCEPTION_MSG_INCOMPLETE_INSTRUCTION);
+                }
+
+                position += decoded;
+            }
+        }
+    }
+
+    /**
+     * Splits every mapped window into regions and decodes each of them speculatively on a worker, as if an
+     * instruction started at the region's first byte. The regions are then stitched in order: from the
+     * true instruction boundary entering a region, instructions are decoded sequentially until the
+     * boundary coincides with one found by the speculative pass, from where on its results are reused.
+     * The output is therefore identical to the sequential sweep.
+     */
+    private void disassembleBinaryParallel(Path input, InstructionWriter writer, int threads) throws IOException {
+        ExecutorService executor = writer.stats.newThreadPool(threads);
+
+        try (FileChannel channel = FileChannel.open(input, StandardOpenOption.READ)) {
+            long size = channel.size();
+            long position = 0;
+
+            writer.stats.startLaps();
+
+            while (position < size) {
+                long windowSize = Math.min(MAP_WINDOW_SIZE, size - position);
+                MappedByteBuffer window = channel.map(FileChannel.MapMode.READ_ONLY, position, windowSize);
+                writer.stats.lap(RunStats.Stage.READ);
+
+                int decoded = disassembleWindowParallel(window, writer, executor, threads);
+
+                if (decoded < windowSize && position + windowSize == size) {
+                    throw new RuntimeException(EXCEPTION_MSG_INCOMPLETE_INSTRUCTION);
+                }
+
+                position += decoded;
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * @return the number of bytes decoded; less than the window's size if its last instruction is incomplete
+     */
+    private int disassembleWindowParallel(ByteBuffer window, InstructionWriter writer, ExecutorService executor,
+                                          int threads) throws IOException {
+        Deque<Future<SpeculativeRegion>> pending = new ArrayDeque<>();
+        int limit = window.limit();
+        int nextRegionStart = 0;
+        int boundary = 0;
 
         try {
-            if (Files.exists(Paths.get(output))) {
-                Files.delete(Paths.get(output));
-            }
-            Files.createFile(Paths.get(output));
-
-            Files.readAllLines(Paths.get(input), StandardCharsets.UTF_8).stream()
-                    .flatMap(line -> disassembler.disassemble(line).stream())
-                    .map(operationTreeNode -> parser.parse(operationTreeNode))
-                    .map(source -> source + "\n")
-                    .forEach(source -> {
-                        try {
-                            Files.write(Paths.get(output), source.getBytes(), StandardOpenOption.APPEND);
-                        } catch (IOException ioe) {
-                            throw new RuntimeException(ioe);
-                        }
-                    });
-        } catch (IOException ioe) {
-            ioe.printStackTrace();
-
-            try {
-                Files.delete(Paths.get(output));
-            } catch (IOException ignored) {
-            }
-        } catch (RuntimeException re) {
-            System.out.println("Error: " + re.getMessage());
-
-            try {
-                Files.delete(Paths.get(output));
-            } catch (IOException ignored) {
+            while (nextRegionStart < limit || !pending.isEmpty()) {
+                while (nextRegionStart < limit && pending.size() < PENDING_REGIONS_PER_THREAD * threads) {
+                    int start = nextRegionStart;
+                    int end = (int) Math.min((long) start + REGION_SIZE, limit);
+
+                    pending.add(executor.submit(() -> disassembleSpeculatively(window, start, end, writer)));
+                    nextRegionStart = end;
+                }
+
+                SpeculativeRegion region = getRegion(pending.poll());
+                writer.stats.startLaps();
+                boundary = stitchRegion(window, region, boundary, writer);
+
+                if (boundary < region.end) {
+                    break;
+                }
             }
+        } finally {
+            pending.forEach(future -> future.cancel(true));
+        }
+
+        return boundary;
+    }
+
+    private SpeculativeRegion disassembleSpeculatively(ByteBuffer window, int start, int end,
+                                                       InstructionWriter writer) {
+        SpeculativeRegion region = new SpeculativeRegion(end);
+        int index = start;
+
+        writer.stats.startLaps();
+
+        try {
+            int length;
+
+            while (index < end && (length = disassembler.getInstructionLength(window, index)) > 0) {
+                region.texts.add(writer.decode(window, index, length));
+                region.addBoundary(index);
+                index += length;
+            }
+        } catch (RuntimeException ignored) {
+            // the speculation ran into bytes that are not an instruction; the true pass decodes from here on
+        }
+
+        region.exit = index;
+        writer.stats.endLaps();
+        return region;
+    }
+
+    /**
+     * Writes the instructions of {@code region} that start at or after the true {@code boundary}.
+     *
+     * @return the next true instruction boundary, which is before the region's end only if the instruction
+     * at it does not fit into the window
+     */
+    private int stitchRegion(ByteBuffer window, SpeculativeRegion region, int boundary, InstructionWriter writer)
+            throws IOException {
+        int speculative = 0;
+
+        while (boundary < region.end) {
+            while (speculative < region.size && region.boundaries[speculative] < boundary) {
+                speculative++;
+            }
+
+            if (speculative < region.size && region.boundaries[speculative] == boundary) {
+                for (int i = speculative; i < region.size; i++) {
+                    writer.writeText(region.texts.get(i));
+                }
+
+                speculative = region.size;
+                boundary = region.exit;
+                continue;
+            }
+
+            int length = writer.write(window, boundary);
+
+            if (length == 0) {
+                break;
+            }
+
+            boundary += length;
+        }
+
+        return boundary;
+    }
+
+    private static SpeculativeRegion getRegion(Future<SpeculativeRegion> region) {
+        try {
+            return region.get();
+        } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(ie);
+        } catch (ExecutionException ee) {
+            if (ee.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) ee.getCause();
+            }
+
+            throw new RuntimeException(ee.getCause());
+        }
+    }
+
+    /**
+     * Writes every complete instruction between the buffer's position and limit and advances the position past
+     * them; an incomplete trailing instruction is left at the position.
+     */
+    private void writeAll(ByteBuffer bytes, InstructionWriter writer) throws IOException {
+        int index = bytes.position();
+        int length;
+
+        while (index < bytes.limit() && (length = writer.write(bytes, index)) > 0) {
+            index += length;
+        }
+
+        bytes.position(index);
+    }
+
+    private void disassemblePending(StringBuilder byteSource, InstructionWriter writer) throws IOException {
+        ByteBuffer bytes = ByteBuffer.wrap(disassembler.getBytes(byteSource));
+
+        writeAll(bytes, writer);
+        byteSource.delete(0, 2 * bytes.position());
+    }
+
+    private void disassembleLineEnd(StringBuilder byteSource, InstructionWriter writer) throws IOException {
+        disassemblePending(byteSource, writer);
+
+        if (byteSource.length() > 0) {
+            throw new RuntimeException(EXCEPTION_MSG_INCOMPLETE_INSTRUCTION);
+        }
+    }
+
+    /**
+     * Decodes instructions into a writer.
+     */
+    private interface WriterJob {
+
+        void decode(InstructionWriter writer) throws IOException;
+    }
+
+    /**
+     * Writes instructions one per line. The text of recently seen instructions is memoized by their bytes in a
+     * cache shared by the writers of all files of a run, and looked up before decoding, which it then saves along
+     * with the formatting. An instruction's length is told by its opcode alone.
+     */
+    private class InstructionWriter {
+
+        private final Writer writer;
+        private final MemoCache<Long, String> memo;
+        private final RunStats stats;
+
+        InstructionWriter(Writer writer, MemoCache<Long, String> memo, RunStats stats) {
+            this.writer = writer;
+            this.memo = memo;
+            this.stats = stats;
+        }
+
+        /**
+         * @return the text of the instruction of the length at the index
+         */
+        String decode(ByteBuffer bytes, int index, int length) {
+            Long key = (memo.isEnabled() && length < Long.BYTES) ? getKey(bytes, index, length) : null;
+            String text = (key != null) ? memo.get(key) : null;
+
+            if (text == null) {
+                Instruction[] decoded = new Instruction[1];
+
+                disassembler.disassembleInstruction(bytes, index, instruction -> decoded[0] = instruction);
+                stats.lap(RunStats.Stage.DECODE);
+                text = parser.parse(decoded[0]);
+
+                if (key != null) {
+                    memo.put(key, text);
+                }
+            }
+
+            stats.lap(RunStats.Stage.FORMAT);
+            return text;
+        }
+
+        /**
+         * Writes the instruction at the index.
+         *
+         * @return the length of the instruction, or 0 if it does not fit before the buffer's limit
+         */
+        int write(ByteBuffer bytes, int index) throws IOException {
+            int length = disassembler.getInstructionLength(bytes, index);
+
+            if (length > 0) {
+                writeText(decode(bytes, index, length));
+            }
+
+            return length;
+        }
+
+        void writeText(String text) throws IOException {
+            writer.write(text);
+            writer.write('\n');
+            stats.addInstructions(1);
+            stats.lap(RunStats.Stage.WRITE);
+        }
+
+        void flush() throws IOException {
+            writer.flush();
+        }
+
+        /**
+         * @return the length of the instruction followed by its bytes, in one long
+         */
+        private long getKey(ByteBuffer bytes, int index, int length) {
+            long key = length;
+
+            for (int i = 0; i < length; i++) {
+                key = (key << Byte.SIZE) | (bytes.get(index + i) & 0xff);
+            }
+
+            return key;
+        }
+    }
+
+    /**
+     * Instructions decoded from the first byte of a region: their offsets, their texts and the offset
+     * where the decoding stopped.
+     */
+    private static class SpeculativeRegion {
+
+        private final int end;
+        private final List<String> texts = new ArrayList<>();
+        private int[] boundaries = new int[1 << 10];
+        private int size;
+        private int exit;
+
+        SpeculativeRegion(int end) {
+            this.end = end;
+        }
+
+        void addBoundary(int boundary) {
+            if (size == boundaries.length) {
+                boundaries = Arrays.copyOf(boundaries, 2 * size);
+            }
+
+            boundaries[size++] = boundary;
         }
     }
 }
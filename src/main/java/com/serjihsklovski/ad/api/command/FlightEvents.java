@@ -0,0 +1,85 @@
+package com.serjihsklovski.ad.api.command;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+/**
+ * Java Flight Recorder events of the commands. Whether an event is enabled is asked of its type, and the event
+ * is created only while a recording has it enabled, so without one the commands allocate no events.
+ * <p>
+ * The events themselves are in {@code JfrRecorder}, which is compiled apart for Java 11 as the `jdk.jfr` API is
+ * not part of Java 8; it is loaded by name, and on a JVM without JFR, or one older than Java 11, the events are
+ * never enabled.
+ */
+final class FlightEvents {
+
+    private static final String RECORDER_CLASS = "com.serjihsklovski.ad.api.command.JfrRecorder";
+
+    private static final Recorder RECORDER = loadRecorder();
+
+    private FlightEvents() {
+    }
+
+    static boolean isStageEnabled() {
+        return RECORDER != null && RECORDER.isStageEnabled();
+    }
+
+    /**
+     * @return the stage events of a unit of work of the calling thread, begun now, or null if they are disabled
+     */
+    static Stages beginStages(String command) {
+        return isStageEnabled() ? RECORDER.beginStages(command) : null;
+    }
+
+    /**
+     * @return the event of a file, begun now, or null if it is disabled
+     */
+    static FileRecord beginFile(String command) {
+        return (RECORDER != null) ? RECORDER.beginFile(command) : null;
+    }
+
+    private static Recorder loadRecorder() {
+        try {
+            Class.forName("jdk.jfr.Event", false, FlightEvents.class.getClassLoader());
+            return (Recorder) Class.forName(RECORDER_CLASS).getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException | LinkageError e) {
+            return null;
+        }
+    }
+
+    /**
+     * Creates the events.
+     */
+    interface Recorder {
+
+        boolean isStageEnabled();
+
+        Stages beginStages(String command);
+
+        /**
+         * @return the event of a file, begun now, or null if it is disabled
+         */
+        FileRecord beginFile(String command);
+    }
+
+    /**
+     * The stage events of one unit of work of a thread, such as a file, a chunk or a region: each spans the whole
+     * unit and carries the time spent in its stage, as the stages of the pipeline interleave line by line.
+     */
+    interface Stages {
+
+        void add(RunStats.Stage stage, long nanos);
+
+        void commit();
+    }
+
+    /**
+     * The event of one file, counting the instructions converted on the thread that converts the file.
+     */
+    interface FileRecord {
+
+        void addInstructions(long count);
+
+        void commit(Path input, Path output) throws IOException;
+    }
+}
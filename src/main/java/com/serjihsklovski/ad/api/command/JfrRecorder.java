@@ -0,0 +1,143 @@
+package com.serjihsklovski.ad.api.command;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.EventType;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Timespan;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+/**
+ * The {@link FlightEvents} on the `jdk.jfr` API. This file is compiled for Java 11 apart from the rest of the
+ * sources, which target Java 8, and nothing refers to it but by name.
+ */
+final class JfrRecorder implements FlightEvents.Recorder {
+
+    private static final String CATEGORY = "Assembler-Disassembler";
+
+    private static final EventType STAGE_EVENT = EventType.getEventType(StageEvent.class);
+    private static final EventType FILE_EVENT = EventType.getEventType(FileEvent.class);
+
+    @Override
+    public boolean isStageEnabled() {
+        return STAGE_EVENT.isEnabled();
+    }
+
+    @Override
+    public FlightEvents.Stages beginStages(String command) {
+        return new JfrStages(command);
+    }
+
+    @Override
+    public FlightEvents.FileRecord beginFile(String command) {
+        if (!FILE_EVENT.isEnabled()) {
+            return null;
+        }
+
+        FileEvent event = new FileEvent();
+        event.command = command;
+        event.begin();
+        return new JfrFileRecord(event);
+    }
+
+    private static final class JfrStages implements FlightEvents.Stages {
+
+        private final StageEvent[] events = new StageEvent[RunStats.Stage.values().length];
+
+        JfrStages(String command) {
+            for (int i = 0; i < events.length; i++) {
+                events[i] = new StageEvent();
+                events[i].command = command;
+                events[i].stage = RunStats.Stage.values()[i].name().toLowerCase();
+                events[i].begin();
+            }
+        }
+
+        @Override
+        public void add(RunStats.Stage stage, long nanos) {
+            events[stage.ordinal()].time += nanos;
+        }
+
+        @Override
+        public void commit() {
+            for (StageEvent event : events) {
+                if (event.time > 0) {
+                    event.commit();
+                }
+            }
+        }
+    }
+
+    private static final class JfrFileRecord implements FlightEvents.FileRecord {
+
+        private final FileEvent event;
+
+        JfrFileRecord(FileEvent event) {
+            this.event = event;
+        }
+
+        @Override
+        public void addInstructions(long count) {
+            event.instructions += count;
+        }
+
+        @Override
+        public void commit(Path input, Path output) throws IOException {
+            event.end();
+            event.input = input.toString();
+            event.output = output.toString();
+            event.bytesIn = StandardStreams.getInputSize(input);
+            event.bytesOut = StandardStreams.getOutputSize(output);
+            event.commit();
+        }
+    }
+
+    @Name("com.serjihsklovski.ad.Stage")
+    @Label("Pipeline Stage")
+    @Category(CATEGORY)
+    @Description("Time a thread spent in a stage of the pipeline during a unit of work")
+    static class StageEvent extends Event {
+
+        @Label("Command")
+        String command;
+
+        @Label("Stage")
+        String stage;
+
+        @Label("Stage Time")
+        @Timespan
+        long time;
+    }
+
+    @Name("com.serjihsklovski.ad.File")
+    @Label("File")
+    @Category(CATEGORY)
+    @Description("Conversion of one input file")
+    static class FileEvent extends Event {
+
+        @Label("Command")
+        String command;
+
+        @Label("Input")
+        String input;
+
+        @Label("Output")
+        String output;
+
+        @Label("Instructions")
+        long instructions;
+
+        @Label("Bytes In")
+        @DataAmount
+        long bytesIn;
+
+        @Label("Bytes Out")
+        @DataAmount
+        long bytesOut;
+    }
+}
@@ -0,0 +1,115 @@
+package com.serjihsklovski.ad.api.command;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A bounded least-recently-used cache, safe for concurrent use: the entries are spread over independently
+ * locked segments, each evicting its own least recently used entry. A capacity of 0 disables the cache.
+ */
+final class MemoCache<K, V> {
+
+    private static final int SEGMENT_BITS = 4;
+    private static final int SEGMENTS = 1 << SEGMENT_BITS;
+
+    private final Segment<K, V>[] segments;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    @SuppressWarnings("unchecked")
+    MemoCache(int capacity) {
+        int segmentCapacity = (capacity + SEGMENTS - 1) / SEGMENTS;
+
+        segments = (Segment<K, V>[]) new Segment<?, ?>[(capacity > 0) ? SEGMENTS : 0];
+
+        for (int i = 0; i < segments.length; i++) {
+            segments[i] = new Segment<>(segmentCapacity, evictions);
+        }
+    }
+
+    boolean isEnabled() {
+        return segments.length > 0;
+    }
+
+    /**
+     * @return the cached value, or null
+     */
+    V get(K key) {
+        if (segments.length == 0) {
+            misses.increment();
+            return null;
+        }
+
+        Segment<K, V> segment = getSegment(key);
+        V value;
+
+        synchronized (segment) {
+            value = segment.get(key);
+        }
+
+        if (value != null) {
+            hits.increment();
+        } else {
+            misses.increment();
+        }
+
+        return value;
+    }
+
+    void put(K key, V value) {
+        if (segments.length == 0) {
+            return;
+        }
+
+        Segment<K, V> segment = getSegment(key);
+
+        synchronized (segment) {
+            segment.put(key, value);
+        }
+    }
+
+    long getHits() {
+        return hits.sum();
+    }
+
+    long getMisses() {
+        return misses.sum();
+    }
+
+    long getEvictions() {
+        return evictions.sum();
+    }
+
+    /**
+     * Picks the segment by the high bits of the mixed hash, as the segment's own table indexes by the low ones.
+     */
+    private Segment<K, V> getSegment(K key) {
+        return segments[(key.hashCode() * 0x9e3779b9) >>> (Integer.SIZE - SEGMENT_BITS)];
+    }
+
+    private static class Segment<K, V> extends LinkedHashMap<K, V> {
+
+        private static final long serialVersionUID = 1L;
+
+        private final int capacity;
+        private final LongAdder evictions;
+
+        Segment(int capacity, LongAdder evictions) {
+            super(16, 0.75f, true);
+            this.capacity = capacity;
+            this.evictions = evictions;
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<K, V> eldest) {
+            if (size() > capacity) {
+                evictions.increment();
+                return true;
+            }
+
+            return false;
+        }
+    }
+}
@@ -0,0 +1,127 @@
+package com.serjihsklovski.ad.api.command;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A bounded queue between two stages of a pipeline: a producer waits while it is full, and a consumer while it
+ * is empty, so a stage that falls behind holds back the ones before it. Once closed, the consumers drain it and
+ * then take null.
+ */
+final class PipelineQueue<T> {
+
+    private static final Object END = new Object();
+
+    private final BlockingQueue<Object> queue;
+    private final Metrics metrics;
+
+    /**
+     * @param metrics where the depth and the waits of the queue are measured, or null
+     */
+    PipelineQueue(int capacity, Metrics metrics) {
+        this.queue = new ArrayBlockingQueue<>(capacity);
+        this.metrics = metrics;
+
+        if (metrics != null) {
+            metrics.capacity = capacity;
+        }
+    }
+
+    void put(T item) throws InterruptedException {
+        if (metrics == null) {
+            queue.put(item);
+            return;
+        }
+
+        if (!queue.offer(item)) {
+            long start = System.nanoTime();
+            queue.put(item);
+            metrics.fullNanos.add(System.nanoTime() - start);
+        }
+
+        metrics.items.increment();
+        metrics.depths.add(queue.size());
+        metrics.maxDepth.accumulate(queue.size());
+    }
+
+    /**
+     * @return the next item, or null once the queue is closed and drained
+     */
+    @SuppressWarnings("unchecked")
+    T take() throws InterruptedException {
+        Object item = queue.poll();
+
+        if (item == null) {
+            long start = System.nanoTime();
+            item = queue.take();
+
+            if (metrics != null) {
+                metrics.emptyNanos.add(System.nanoTime() - start);
+            }
+        }
+
+        if (item == END) {
+            // leaves the end for the other consumers; taking it has freed the room for it
+            queue.offer(END);
+            return null;
+        }
+
+        return (T) item;
+    }
+
+    /**
+     * Ends the queue after the items put so far.
+     */
+    void close() throws InterruptedException {
+        queue.put(END);
+    }
+
+    /**
+     * The depth and the waits of all queues between the same two stages during a run.
+     */
+    static final class Metrics {
+
+        private final LongAdder items = new LongAdder();
+        private final LongAdder depths = new LongAdder();
+        private final LongAccumulator maxDepth = new LongAccumulator(Math::max, 0);
+        private final LongAdder fullNanos = new LongAdder();
+        private final LongAdder emptyNanos = new LongAdder();
+        private volatile int capacity;
+
+        int getCapacity() {
+            return capacity;
+        }
+
+        long getItems() {
+            return items.sum();
+        }
+
+        /**
+         * @return the mean depth of the queue right after a put
+         */
+        double getMeanDepth() {
+            long count = items.sum();
+            return (count > 0) ? (double) depths.sum() / count : 0;
+        }
+
+        long getMaxDepth() {
+            return maxDepth.get();
+        }
+
+        /**
+         * @return the time the producers waited for room, as the consumers fell behind
+         */
+        long getFullNanos() {
+            return fullNanos.sum();
+        }
+
+        /**
+         * @return the time the consumers waited for items, as the producers fell behind
+         */
+        long getEmptyNanos() {
+            return emptyNanos.sum();
+        }
+    }
+}
@@ -0,0 +1,427 @@
+package com.serjihsklovski.ad.api.command;
+
+import org.apache.commons.cli.CommandLine;
+
+import java.io.IOException;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.management.ThreadMXBean;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Metrics of one run of a command, written as a JSON report to the file given by `-stats`: the time spent in
+ * each stage of the pipeline summed over all threads, the throughput, the depth of the queues between staged
+ * threads, and the allocation, garbage collections and peak heap of the run. The JVM-wide figures include
+ * whatever else runs in the JVM at the same time.
+ * <p>
+ * Every thread times its stages by laps: a lap ends a stage and starts the next one. A disabled instance
+ * records nothing, unless a flight recording has the {@link FlightEvents} enabled: then the laps of each unit
+ * of work and each file are committed as events, whether or not there is a report.
+ */
+final class RunStats {
+
+    enum Stage {
+        READ,
+        LEX,
+        PARSE,
+        OPTIMIZE,
+        ENCODE,
+        LINK,
+        DECODE,
+        FORMAT,
+        WRITE,
+    }
+
+    private static final long WORKER_JOIN_TIMEOUT_MILLIS = 1000;
+    private static final double NANOS_PER_MILLI = 1e6;
+    private static final double NANOS_PER_SECOND = 1e9;
+
+    private final String command;
+    private final Path report;
+    private final Queue<Clock> clocks = new ConcurrentLinkedQueue<>();
+    private final ThreadLocal<Clock> clock = ThreadLocal.withInitial(this::newClock);
+    private final Queue<Thread> workers = new ConcurrentLinkedQueue<>();
+    private final LongAdder instructions = new LongAdder();
+    private final LongAdder bytesIn = new LongAdder();
+    private final LongAdder bytesOut = new LongAdder();
+    private final LongAdder workerAllocatedBytes = new LongAdder();
+    private MemoCache<?, ?> memo;
+    private final Map<String, PipelineQueue.Metrics> queues = new LinkedHashMap<>();
+
+    private volatile boolean timing;
+    private volatile boolean recordingFiles;
+
+    private long startNanos;
+    private long startCollections;
+    private long startCollectionMillis;
+    private long startAllocatedBytes;
+
+    private RunStats(String command, Path report) {
+        this.command = command;
+        this.report = report;
+        this.timing = report != null;
+    }
+
+    /**
+     * @return the stats of a run of the command, started, or a disabled instance without `-stats`
+     */
+    static RunStats of(String command, CommandLine cmd) {
+        RunStats stats = new RunStats(command, cmd.hasOption("stats") ? Paths.get(cmd.getOptionValue("stats")) : null);
+
+        if (stats.isEnabled()) {
+            stats.start();
+        }
+
+        return stats;
+    }
+
+    boolean isEnabled() {
+        return report != null;
+    }
+
+    /**
+     * Starts the calling thread's next lap now, so the time since its last lap is not counted, and opens a unit
+     * of work for the stage events unless one is open.
+     */
+    void startLaps() {
+        if (!timing && FlightEvents.isStageEnabled()) {
+            timing = true;
+        }
+
+        if (timing) {
+            Clock threadClock = clock.get();
+            threadClock.last = System.nanoTime();
+
+            if (threadClock.stages == null) {
+                threadClock.stages = FlightEvents.beginStages(command);
+            }
+        }
+    }
+
+    /**
+     * Ends the calling thread's current lap, counting its time to the stage.
+     */
+    void lap(Stage stage) {
+        if (timing) {
+            clock.get().lap(stage);
+        }
+    }
+
+    /**
+     * Ends the calling thread's unit of work, committing its stage events.
+     */
+    void endLaps() {
+        if (timing) {
+            Clock threadClock = clock.get();
+
+            if (threadClock.stages != null) {
+                threadClock.stages.commit();
+                threadClock.stages = null;
+            }
+        }
+    }
+
+    /**
+     * Starts the calling thread's file, which is converted on it up to {@link #addFile}.
+     */
+    void startFile() {
+        FlightEvents.FileRecord file = FlightEvents.beginFile(command);
+
+        if (file != null) {
+            recordingFiles = true;
+        }
+
+        if (file != null || recordingFiles) {
+            clock.get().file = file;
+        }
+    }
+
+    /**
+     * Counts instructions of the calling thread's file.
+     */
+    void addInstructions(long count) {
+        if (report != null) {
+            instructions.add(count);
+        }
+
+        if (recordingFiles) {
+            FlightEvents.FileRecord file = clock.get().file;
+
+            if (file != null) {
+                file.addInstructions(count);
+            }
+        }
+    }
+
+    /**
+     * Ends the calling thread's file along with its unit of work.
+     */
+    void addFile(Path input, Path output) throws IOException {
+        if (report != null) {
+            bytesIn.add(StandardStreams.getInputSize(input));
+            bytesOut.add(StandardStreams.getOutputSize(output));
+        }
+
+        if (recordingFiles) {
+            Clock threadClock = clock.get();
+
+            if (threadClock.file != null) {
+                threadClock.file.commit(input, output);
+                threadClock.file = null;
+            }
+        }
+
+        endLaps();
+    }
+
+    void setMemo(MemoCache<?, ?> memo) {
+        this.memo = memo;
+    }
+
+    /**
+     * @return a fixed pool whose workers count their allocations to the run as they exit
+     */
+    ExecutorService newThreadPool(int threads) {
+        if (report == null) {
+            return Executors.newFixedThreadPool(threads);
+        }
+
+        return Executors.newFixedThreadPool(threads, task -> {
+            Thread worker = new Thread(() -> {
+                long allocatedBytes = getAllocatedBytes();
+
+                try {
+                    task.run();
+                } finally {
+                    workerAllocatedBytes.add(getAllocatedBytes() - allocatedBytes);
+                }
+            });
+
+            workers.add(worker);
+            return worker;
+        });
+    }
+
+    /**
+     * @return a queue feeding the stage, measured with every other queue feeding it during the run
+     */
+    <T> PipelineQueue<T> newQueue(String stage, int capacity) {
+        if (report == null) {
+            return new PipelineQueue<>(capacity, null);
+        }
+
+        synchronized (queues) {
+            return new PipelineQueue<>(capacity, queues.computeIfAbsent(stage, name -> new PipelineQueue.Metrics()));
+        }
+    }
+
+    /**
+     * Writes the report, once the workers of the run's pools have exited.
+     */
+    void report() throws IOException {
+        if (report == null) {
+            return;
+        }
+
+        long wallNanos = System.nanoTime() - startNanos;
+
+        for (Thread worker : workers) {
+            try {
+                worker.join(WORKER_JOIN_TIMEOUT_MILLIS);
+            } catch (InterruptedException ie) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+
+        long[] stageNanos = new long[Stage.values().length];
+
+        for (Clock threadClock : clocks) {
+            for (int i = 0; i < stageNanos.length; i++) {
+                stageNanos[i] += threadClock.nanos[i];
+            }
+        }
+
+        StringBuilder json = new StringBuilder("{\n");
+        double wallSeconds = wallNanos / NANOS_PER_SECOND;
+
+        appendField(json, "command", "\"" + command + "\"");
+        appendField(json, "wallMs", formatMillis(wallNanos));
+        json.append("  \"stagesMs\": {");
+
+        String separator = "\n";
+
+        for (Stage stage : Stage.values()) {
+            if (stageNanos[stage.ordinal()] > 0) {
+                json.append(separator).append("    \"").append(stage.name().toLowerCase()).append("\": ")
+                        .append(formatMillis(stageNanos[stage.ordinal()]));
+                separator = ",\n";
+            }
+        }
+
+        json.append("\n  },\n");
+        appendField(json, "instructions", Long.toString(instructions.sum()));
+        appendField(json, "instructionsPerSec", formatRate(instructions.sum(), wallSeconds));
+        appendField(json, "bytesIn", Long.toString(bytesIn.sum()));
+        appendField(json, "bytesOut", Long.toString(bytesOut.sum()));
+        appendField(json, "bytesPerSec", formatRate(bytesIn.sum(), wallSeconds));
+
+        if (memo != null) {
+            json.append(String.format(Locale.ROOT, "  \"memo\": {\"hits\": %d, \"misses\": %d, \"evictions\": %d},%n",
+                    memo.getHits(), memo.getMisses(), memo.getEvictions()));
+        }
+
+        synchronized (queues) {
+            appendQueues(json, queues, wallSeconds);
+        }
+
+        json.append(String.format(Locale.ROOT, "  \"gc\": {\"collections\": %d, \"timeMs\": %d},%n",
+                getCollections() - startCollections, getCollectionMillis() - startCollectionMillis));
+
+        long allocatedBytes = getAllocatedBytes();
+        appendField(json, "allocatedBytes", (allocatedBytes < 0)
+                ? "null"
+                : Long.toString(allocatedBytes - startAllocatedBytes + workerAllocatedBytes.sum()));
+        json.append("  \"peakHeapBytes\": ").append(getPeakHeapBytes()).append("\n}\n");
+
+        try (AtomicFileOutput out = new AtomicFileOutput(report)) {
+            out.getStream().write(json.toString().getBytes(StandardCharsets.UTF_8));
+            out.commit();
+        }
+    }
+
+    private void start() {
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP && pool.isValid()) {
+                pool.resetPeakUsage();
+            }
+        }
+
+        startCollections = getCollections();
+        startCollectionMillis = getCollectionMillis();
+        startAllocatedBytes = getAllocatedBytes();
+        startNanos = System.nanoTime();
+    }
+
+    private Clock newClock() {
+        Clock threadClock = new Clock();
+        clocks.add(threadClock);
+        return threadClock;
+    }
+
+    private static void appendField(StringBuilder json, String name, String value) {
+        json.append("  \"").append(name).append("\": ").append(value).append(",\n");
+    }
+
+    private static void appendQueues(StringBuilder json, Map<String, PipelineQueue.Metrics> queues,
+                                     double wallSeconds) {
+        if (queues.isEmpty()) {
+            return;
+        }
+
+        json.append("  \"queues\": {");
+
+        String separator = "\n";
+
+        for (Map.Entry<String, PipelineQueue.Metrics> queue : queues.entrySet()) {
+            PipelineQueue.Metrics metrics = queue.getValue();
+
+            json.append(separator).append(String.format(Locale.ROOT,
+                    "    \"%s\": {\"capacity\": %d, \"batches\": %d, \"batchesPerSec\": %s, \"meanDepth\": %.2f, "
+                            + "\"maxDepth\": %d, \"fullMs\": %s, \"emptyMs\": %s}",
+                    queue.getKey(), metrics.getCapacity(), metrics.getItems(),
+                    formatRate(metrics.getItems(), wallSeconds), metrics.getMeanDepth(), metrics.getMaxDepth(),
+                    formatMillis(metrics.getFullNanos()), formatMillis(metrics.getEmptyNanos())));
+            separator = ",\n";
+        }
+
+        json.append("\n  },\n");
+    }
+
+    private static String formatMillis(long nanos) {
+        return String.format(Locale.ROOT, "%.3f", nanos / NANOS_PER_MILLI);
+    }
+
+    private static String formatRate(long count, double seconds) {
+        return String.format(Locale.ROOT, "%.1f", (seconds > 0) ? count / seconds : 0.0);
+    }
+
+    private static long getCollections() {
+        long collections = 0;
+
+        for (GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans()) {
+            collections += Math.max(collector.getCollectionCount(), 0);
+        }
+
+        return collections;
+    }
+
+    private static long getCollectionMillis() {
+        long millis = 0;
+
+        for (GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans()) {
+            millis += Math.max(collector.getCollectionTime(), 0);
+        }
+
+        return millis;
+    }
+
+    /**
+     * @return the bytes allocated by the calling thread so far, or -1 if the JVM does not count them
+     */
+    private static long getAllocatedBytes() {
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+
+        if (threads instanceof com.sun.management.ThreadMXBean) {
+            return ((com.sun.management.ThreadMXBean) threads).getThreadAllocatedBytes(Thread.currentThread().getId());
+        }
+
+        return -1;
+    }
+
+    private static long getPeakHeapBytes() {
+        long peak = 0;
+
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP && pool.isValid()) {
+                peak += pool.getPeakUsage().getUsed();
+            }
+        }
+
+        return peak;
+    }
+
+    /**
+     * The stage times and the open events of one thread, written only by it.
+     */
+    private static final class Clock {
+
+        private final long[] nanos = new long[Stage.values().length];
+        private long last = System.nanoTime();
+        private FlightEvents.Stages stages;
+        private FlightEvents.FileRecord file;
+
+        void lap(Stage stage) {
+            long now = System.nanoTime();
+            nanos[stage.ordinal()] += now - last;
+
+            if (stages != null) {
+                stages.add(stage, now - last);
+            }
+
+            last = now;
+        }
+    }
+}
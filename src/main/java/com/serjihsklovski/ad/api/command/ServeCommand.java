@@ -0,0 +1,14 @@
+package com.serjihsklovski.ad.api.command;
+
+import com.serjihsklovski.ad.api.server.AssemblerServer;
+import org.apache.commons.cli.CommandLine;
+
+import java.io.IOException;
+
+public class ServeCommand implements Command {
+
+    @Override
+    public void execute(CommandLine cmd) throws IOException {
+        new AssemblerServer(CommandOptions.getPort(cmd)).serve();
+    }
+}
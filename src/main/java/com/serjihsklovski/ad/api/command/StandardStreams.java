@@ -0,0 +1,138 @@
+package com.serjihsklovski.ad.api.command;
+
+import java.io.BufferedReader;
+import java.io.FileDescriptor;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FilterInputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The standard input and output of the process, given as `-` in place of an input or output path. They are
+ * read and written through their file descriptors, bypassing {@code System.in} and {@code System.out}, and are
+ * never closed. The bytes passed through them are counted for the stats.
+ */
+final class StandardStreams {
+
+    static final String NAME = "-";
+
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private static final AtomicLong BYTES_READ = new AtomicLong();
+    private static final AtomicLong BYTES_WRITTEN = new AtomicLong();
+
+    private StandardStreams() {
+    }
+
+    static boolean isStandard(Path path) {
+        return path.toString().equals(NAME);
+    }
+
+    static boolean isStandard(String path) {
+        return NAME.equals(path);
+    }
+
+    /**
+     * @return the file, or the standard input if the path is `-`
+     */
+    static InputStream newInputStream(Path input) throws IOException {
+        return isStandard(input) ? new StandardInput() : Files.newInputStream(input);
+    }
+
+    /**
+     * @return a reader of the UTF-8 text of the file, or of the standard input if the path is `-`
+     */
+    static BufferedReader newBufferedReader(Path input) throws IOException {
+        if (!isStandard(input)) {
+            return Files.newBufferedReader(input, StandardCharsets.UTF_8);
+        }
+
+        return new BufferedReader(new InputStreamReader(new StandardInput(), StandardCharsets.UTF_8), BUFFER_SIZE);
+    }
+
+    /**
+     * @return an unbuffered stream to the standard output, which is flushed but not closed by {@code close()}
+     */
+    static OutputStream newOutputStream() {
+        return new StandardOutput();
+    }
+
+    /**
+     * @return the size of the input file, or the bytes read from the standard input so far if the path is `-`
+     */
+    static long getInputSize(Path input) throws IOException {
+        return isStandard(input) ? BYTES_READ.get() : Files.size(input);
+    }
+
+    /**
+     * @return the size of the output file, or the bytes written to the standard output so far if the path is `-`
+     */
+    static long getOutputSize(Path output) throws IOException {
+        return isStandard(output) ? BYTES_WRITTEN.get() : Files.size(output);
+    }
+
+    private static final class StandardInput extends FilterInputStream {
+
+        StandardInput() {
+            super(new FileInputStream(FileDescriptor.in));
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+
+            if (b >= 0) {
+                BYTES_READ.incrementAndGet();
+            }
+
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int read = super.read(b, off, len);
+
+            if (read > 0) {
+                BYTES_READ.addAndGet(read);
+            }
+
+            return read;
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+
+    private static final class StandardOutput extends FilterOutputStream {
+
+        StandardOutput() {
+            super(new FileOutputStream(FileDescriptor.out));
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            BYTES_WRITTEN.incrementAndGet();
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            BYTES_WRITTEN.addAndGet(len);
+        }
+
+        @Override
+        public void close() throws IOException {
+            out.flush();
+        }
+    }
+}
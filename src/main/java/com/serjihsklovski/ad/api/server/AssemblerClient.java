@@ -0,0 +1,113 @@
+package com.serjihsklovski.ad.api.server;
+
+import com.serjihsklovski.ad.Application;
+import com.serjihsklovski.ad.api.command.CommandManager;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Sends its command line to a running {@link AssemblerServer} as a job, prints the report and exits with
+ * the job's status. Every path option is resolved against the client's working directory first, except `-`, as
+ * the server has no standard streams to offer a job: a batch manifest after its `@`, and a glob
+ * only by prefixing the directory, so that it keeps matching the same files. `-port` selects the server, whose
+ * token the client reads from the home directory of its user.
+ */
+public class AssemblerClient {
+
+    private static final String MANIFEST_PREFIX = "@";
+
+    private static final String EXCEPTION_MSG_INVALID_PORT = "`%s` - an invalid port!";
+    private static final String EXCEPTION_MSG_NO_PORT = "`-port` needs a value!";
+    private static final String USAGE = "Usage: AssemblerClient [-port <port>] <arguments of the command>";
+
+    public static void main(String[] args) {
+        List<String> request = new ArrayList<>();
+        int port = ServerProtocol.DEFAULT_PORT;
+
+        for (int i = 0; i < args.length; i++) {
+            boolean hasValue = i + 1 < args.length;
+
+            if (args[i].equals("-port")) {
+                port = hasValue ? parsePort(args[++i]) : exitWithUsage(EXCEPTION_MSG_NO_PORT);
+            } else if (isPathOption(args[i]) && hasValue && !args[i + 1].equals("-")) {
+                request.add(args[i]);
+                request.add(resolve(args[i], args[++i]));
+            } else {
+                request.add(args[i]);
+            }
+        }
+
+        int status;
+
+        try {
+            status = send(port, request);
+        } catch (IOException ioe) {
+            System.err.println("Error: " + ioe.getMessage());
+            status = Application.EXIT_FAILURE;
+        }
+
+        System.out.flush();
+        System.exit(status);
+    }
+
+    /**
+     * @return the exit status of the job
+     */
+    private static int send(int port, List<String> request) throws IOException {
+        String token = ServerToken.read(port);
+
+        try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), port)) {
+            ServerProtocol.writeRequest(socket.getOutputStream(), token, request);
+            return ServerProtocol.readResponse(socket.getInputStream(), System.out);
+        }
+    }
+
+    /**
+     * @return the port, from 1 to 65535
+     */
+    private static int parsePort(String port) {
+        try {
+            int n = Integer.parseInt(port);
+
+            if (n > 0 && n <= 0xffff) {
+                return n;
+            }
+        } catch (NumberFormatException ignored) {
+        }
+
+        return exitWithUsage(String.format(EXCEPTION_MSG_INVALID_PORT, port));
+    }
+
+    /**
+     * Reports the error with the usage and exits with {@link Application#EXIT_FAILURE}.
+     *
+     * @return nothing, as it never returns
+     */
+    private static int exitWithUsage(String message) {
+        System.err.println("Error: " + message);
+        System.err.println(USAGE);
+        System.exit(Application.EXIT_FAILURE);
+        return Application.EXIT_FAILURE;
+    }
+
+    /**
+     * @return the path against the working directory, prefixed as a string rather than parsed and normalized, so
+     * that the glob characters and `..` of a pattern survive
+     */
+    private static String resolve(String option, String path) {
+        if (option.equals("-input") && path.startsWith(MANIFEST_PREFIX)) {
+            return MANIFEST_PREFIX + resolve(option, path.substring(MANIFEST_PREFIX.length()));
+        }
+
+        return new File(path).getAbsolutePath();
+    }
+
+    private static boolean isPathOption(String arg) {
+        return arg.startsWith("-") && CommandManager.PATH_OPTIONS.contains(arg.substring(1));
+    }
+}
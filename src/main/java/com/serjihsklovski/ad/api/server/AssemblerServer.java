@@ -0,0 +1,152 @@
+package com.serjihsklovski.ad.api.server;
+
+import com.serjihsklovski.ad.Application;
+import com.serjihsklovski.ad.api.command.Command;
+import com.serjihsklovski.ad.api.command.CommandManager;
+import com.serjihsklovski.ad.api.command.ServeCommand;
+import org.apache.commons.cli.CommandLine;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.io.UnsupportedEncodingException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Runs jobs sent by {@link AssemblerClient} in this JVM, so that they pay neither its startup nor a cold
+ * JIT. The commands are stateless, so every one of them is created once and shared by concurrent jobs.
+ * Only a client presenting the {@link ServerToken} of the server gets a job run, and a client has
+ * {@link #REQUEST_TIMEOUT_MILLIS} to send its request.
+ */
+public class AssemblerServer {
+
+    private static final int BACKLOG = 128;
+    private static final int REQUEST_TIMEOUT_MILLIS = 10_000;
+
+    private static final String EXCEPTION_MSG_NESTED_SERVER = "A job cannot start a server!";
+    private static final String EXCEPTION_MSG_STANDARD_STREAM = "A job cannot use the standard streams of the server!";
+    private static final String EXCEPTION_MSG_INVALID_TOKEN = "Error: An invalid server token!";
+
+    private static final String STANDARD_STREAM = "-";
+
+    private final Application application = new Application();
+    private final Map<String, Command> commands = new ConcurrentHashMap<>();
+    private final int port;
+    private String token;
+
+    public AssemblerServer(int port) {
+        this.port = port;
+    }
+
+    /**
+     * Accepts jobs on the loopback interface until the process is stopped, and deletes its token then, whether
+     * it stops on an error or on a signal.
+     */
+    public void serve() throws IOException {
+        ExecutorService executor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+
+        try (ServerSocket server = new ServerSocket(port, BACKLOG, InetAddress.getLoopbackAddress())) {
+            int localPort = server.getLocalPort();
+            Thread deleteToken = new Thread(() -> ServerToken.delete(localPort));
+
+            Runtime.getRuntime().addShutdownHook(deleteToken);
+            token = ServerToken.create(localPort);
+            System.out.println("Listening on " + server.getInetAddress().getHostAddress() + ":" + localPort);
+
+            try {
+                while (!Thread.currentThread().isInterrupted()) {
+                    Socket socket = server.accept();
+                    socket.setSoTimeout(REQUEST_TIMEOUT_MILLIS);
+                    executor.execute(() -> handle(socket));
+                }
+            } finally {
+                ServerToken.delete(localPort);
+                removeShutdownHook(deleteToken);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static void removeShutdownHook(Thread hook) {
+        try {
+            Runtime.getRuntime().removeShutdownHook(hook);
+        } catch (IllegalStateException ignored) {
+            // the JVM is already shutting down, and the hook runs anyway
+        }
+    }
+
+    private void handle(Socket socket) {
+        try (Socket client = socket) {
+            BufferedReader reader = new BufferedReader(
+                    new InputStreamReader(client.getInputStream(), ServerProtocol.CHARSET));
+            if (!ServerToken.matches(token, reader.readLine())) {
+                ServerProtocol.writeResponse(client.getOutputStream(),
+                        EXCEPTION_MSG_INVALID_TOKEN.getBytes(ServerProtocol.CHARSET), 1);
+                return;
+            }
+
+            String[] args = ServerProtocol.readRequest(reader);
+            ByteArrayOutputStream report = new ByteArrayOutputStream();
+
+            int status = runJob(args, newPrintStream(report));
+            ServerProtocol.writeResponse(client.getOutputStream(), report.toByteArray(), status);
+        } catch (IOException ignored) {
+            // the client has gone away or kept silent, there is nobody to report to
+        }
+    }
+
+    /**
+     * @return the exit status the job would have had as a separate process
+     */
+    private int runJob(String[] args, PrintStream report) {
+        try {
+            CommandLine cmd = application.createCommandLine(args);
+            Command command = getCommand(CommandManager.determineCommand(cmd));
+
+            if (command instanceof ServeCommand) {
+                throw new RuntimeException(EXCEPTION_MSG_NESTED_SERVER);
+            }
+
+            for (String option : CommandManager.PATH_OPTIONS) {
+                if (STANDARD_STREAM.equals(cmd.getOptionValue(option))) {
+                    throw new RuntimeException(EXCEPTION_MSG_STANDARD_STREAM);
+                }
+            }
+
+            return Application.execute(command, cmd, report, report);
+        } catch (RuntimeException re) {
+            report.println("Error: " + re.getMessage());
+            return Application.EXIT_FAILURE;
+        } finally {
+            report.flush();
+        }
+    }
+
+    private Command getCommand(String name) {
+        Command command = (name != null) ? commands.get(name) : null;
+
+        if (command == null) {
+            command = CommandManager.forName(name);
+            commands.putIfAbsent(name, command);
+        }
+
+        return command;
+    }
+
+    private static PrintStream newPrintStream(ByteArrayOutputStream report) {
+        try {
+            return new PrintStream(report, true, ServerProtocol.CHARSET.name());
+        } catch (UnsupportedEncodingException uee) {
+            throw new IllegalStateException(uee);
+        }
+    }
+}
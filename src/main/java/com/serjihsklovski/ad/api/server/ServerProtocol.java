@@ -0,0 +1,94 @@
+package com.serjihsklovski.ad.api.server;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The exchange between {@link AssemblerClient} and {@link AssemblerServer}, one job per connection: the
+ * client sends the {@link ServerToken} of the server on a line of its own and the command line arguments one
+ * per line followed by an empty line, the server replies with the report of the job followed by a line with its
+ * exit status and closes the connection.
+ */
+public final class ServerProtocol {
+
+    public static final int DEFAULT_PORT = 7357;
+    public static final Charset CHARSET = StandardCharsets.UTF_8;
+
+    private static final String EXCEPTION_MSG_NO_STATUS = "The server closed the connection without a status!";
+
+    private ServerProtocol() {
+    }
+
+    public static void writeRequest(OutputStream out, String token, List<String> args) throws IOException {
+        StringBuilder request = new StringBuilder(token).append('\n');
+
+        for (String arg : args) {
+            request.append(arg).append('\n');
+        }
+
+        out.write(request.append('\n').toString().getBytes(CHARSET));
+        out.flush();
+    }
+
+    /**
+     * Reads the arguments following the token.
+     */
+    public static String[] readRequest(BufferedReader reader) throws IOException {
+        List<String> args = new ArrayList<>();
+        String line;
+
+        while ((line = reader.readLine()) != null && !line.isEmpty()) {
+            args.add(line);
+        }
+
+        return args.toArray(new String[0]);
+    }
+
+    public static void writeResponse(OutputStream out, byte[] report, int status) throws IOException {
+        out.write(report);
+
+        if (report.length > 0 && report[report.length - 1] != '\n') {
+            out.write('\n');
+        }
+
+        out.write((status + "\n").getBytes(CHARSET));
+        out.flush();
+    }
+
+    /**
+     * Copies the report of the job to {@code report}.
+     *
+     * @return the exit status of the job
+     */
+    public static int readResponse(InputStream in, OutputStream report) throws IOException {
+        ByteArrayOutputStream response = new ByteArrayOutputStream();
+        byte[] buffer = new byte[1 << 13];
+        int read;
+
+        while ((read = in.read(buffer)) != -1) {
+            response.write(buffer, 0, read);
+        }
+
+        String text = new String(response.toByteArray(), CHARSET);
+
+        if (!text.endsWith("\n")) {
+            throw new IOException(EXCEPTION_MSG_NO_STATUS);
+        }
+
+        int statusStart = text.lastIndexOf('\n', text.length() - 2) + 1;
+
+        try {
+            report.write(text.substring(0, statusStart).getBytes(CHARSET));
+            return Integer.parseInt(text.substring(statusStart, text.length() - 1));
+        } catch (NumberFormatException nfe) {
+            throw new IOException(EXCEPTION_MSG_NO_STATUS, nfe);
+        }
+    }
+}
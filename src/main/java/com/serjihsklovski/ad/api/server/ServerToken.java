@@ -0,0 +1,111 @@
+package com.serjihsklovski.ad.api.server;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileAttribute;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+
+/**
+ * The secret a client must send before a job, so that only the user running the server can submit jobs to it.
+ * The server writes a fresh random token for its port to a file only its owner can read, under the owner's
+ * home directory, and the client reads it from there. The server deletes the file when it stops.
+ */
+final class ServerToken {
+
+    private static final String DIRECTORY = ".assembler-disassembler";
+    private static final String FILE_NAME = "server-%d.token";
+    private static final int TOKEN_BYTES = 32;
+
+    private static final String EXCEPTION_MSG_NO_TOKEN = "`%s` - no server token, is the server running?";
+
+    private static final boolean POSIX = FileSystems.getDefault().supportedFileAttributeViews().contains("posix");
+
+    private ServerToken() {
+    }
+
+    /**
+     * Writes a fresh token for the port, replacing the one of any previous server.
+     *
+     * @return the token
+     */
+    static String create(int port) throws IOException {
+        byte[] random = new byte[TOKEN_BYTES];
+        new SecureRandom().nextBytes(random);
+        StringBuilder token = new StringBuilder(2 * TOKEN_BYTES);
+
+        for (byte b : random) {
+            token.append(String.format("%02x", b & 0xff));
+        }
+
+        Path file = getFile(port);
+        Path directory = file.getParent();
+
+        Files.createDirectories(directory, getOwnerOnly("rwx------"));
+        Path temp = Files.createTempFile(directory, file.getFileName().toString(), ".tmp", getOwnerOnly("rw-------"));
+
+        try {
+            Files.write(temp, token.toString().getBytes(StandardCharsets.US_ASCII));
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+
+        return token.toString();
+    }
+
+    /**
+     * Deletes the token of the port, so that a client of a stopped server is told that none is running.
+     */
+    static void delete(int port) {
+        try {
+            Files.deleteIfExists(getFile(port));
+        } catch (IOException ignored) {
+            // a token left behind only fails the clients with a refused connection instead
+        }
+    }
+
+    /**
+     * @return the token of the server running on the port
+     */
+    static String read(int port) throws IOException {
+        Path file = getFile(port);
+
+        if (!Files.isRegularFile(file)) {
+            throw new IOException(String.format(EXCEPTION_MSG_NO_TOKEN, file));
+        }
+
+        return new String(Files.readAllBytes(file), StandardCharsets.US_ASCII).trim();
+    }
+
+    /**
+     * @return whether the tokens are equal, compared in a time independent of where they differ
+     */
+    static boolean matches(String expected, String actual) {
+        return actual != null && MessageDigest.isEqual(
+                expected.getBytes(StandardCharsets.US_ASCII), actual.getBytes(StandardCharsets.US_ASCII));
+    }
+
+    /**
+     * @return the permissions to create a file or directory with, none where the file system has no POSIX ones
+     */
+    private static FileAttribute<?>[] getOwnerOnly(String permissions) {
+        if (!POSIX) {
+            return new FileAttribute<?>[0];
+        }
+
+        return new FileAttribute<?>[]{
+                PosixFilePermissions.asFileAttribute(PosixFilePermissions.fromString(permissions))
+        };
+    }
+
+    private static Path getFile(int port) {
+        return Paths.get(System.getProperty("user.home"), DIRECTORY, String.format(FILE_NAME, port));
+    }
+}
@@ -0,0 +1,177 @@
+package com.serjihsklovski.ad.component;
+
+import java.util.Objects;
+
+/**
+ * A single instruction: a mnemonic and up to two operands, each of them stored as a primitive - the ordinal
+ * of a {@link Register} or the value of an immediate. A jump may refer to a label instead, and a label may be
+ * defined at the instruction; a line with only a label has no mnemonic.
+ */
+public class Instruction {
+
+    public static final int MAX_OPERANDS = 2;
+
+    private static final String EXCEPTION_MSG_TOO_MANY_OPERANDS = "More than %d operands are not supported!";
+
+    private Mnemonic mnemonic;
+    private int operandCount;
+    private OperandKind firstOperandKind = OperandKind.NONE;
+    private OperandKind secondOperandKind = OperandKind.NONE;
+    private long firstOperand;
+    private long secondOperand;
+    private String label;
+    private String target;
+
+    public Instruction() {
+    }
+
+    public Instruction(Mnemonic mnemonic) {
+        this.mnemonic = mnemonic;
+    }
+
+    public Mnemonic getMnemonic() {
+        return mnemonic;
+    }
+
+    public void setMnemonic(Mnemonic mnemonic) {
+        this.mnemonic = mnemonic;
+    }
+
+    /**
+     * @return the label defined at the instruction, or null
+     */
+    public String getLabel() {
+        return label;
+    }
+
+    public void setLabel(String label) {
+        this.label = label;
+    }
+
+    /**
+     * @return the label the instruction refers to, or null
+     */
+    public String getTarget() {
+        return target;
+    }
+
+    public boolean hasLabels() {
+        return label != null || target != null;
+    }
+
+    public int getOperandCount() {
+        return operandCount;
+    }
+
+    public OperandKind getOperandKind(int index) {
+        switch (index) {
+            case 0:
+                return firstOperandKind;
+
+            case 1:
+                return secondOperandKind;
+
+            default:
+                return OperandKind.NONE;
+        }
+    }
+
+    public boolean hasOperands(OperandKind first) {
+        return operandCount == 1 && firstOperandKind == first;
+    }
+
+    public boolean hasOperands(OperandKind first, OperandKind second) {
+        return operandCount == 2 && firstOperandKind == first && secondOperandKind == second;
+    }
+
+    public int getRegister(int index) {
+        return (int) getOperand(index);
+    }
+
+    public long getImmediate(int index) {
+        return getOperand(index);
+    }
+
+    private long getOperand(int index) {
+        return (index == 0) ? firstOperand : secondOperand;
+    }
+
+    public Instruction addRegister(Register register) {
+        return addOperand(OperandKind.REGISTER, register.ordinal());
+    }
+
+    public Instruction addImmediate(long immediate) {
+        return addOperand(OperandKind.IMMEDIATE, immediate);
+    }
+
+    public Instruction addTarget(String target) {
+        this.target = target;
+        return addOperand(OperandKind.LABEL, 0);
+    }
+
+    private Instruction addOperand(OperandKind kind, long operand) {
+        switch (operandCount) {
+            case 0:
+                firstOperandKind = kind;
+                firstOperand = operand;
+                break;
+
+            case 1:
+                secondOperandKind = kind;
+                secondOperand = operand;
+                break;
+
+            default:
+                throw new RuntimeException(String.format(EXCEPTION_MSG_TOO_MANY_OPERANDS, MAX_OPERANDS));
+        }
+
+        operandCount++;
+        return this;
+    }
+
+    public void clear() {
+        mnemonic = null;
+        operandCount = 0;
+        firstOperandKind = OperandKind.NONE;
+        secondOperandKind = OperandKind.NONE;
+        firstOperand = 0;
+        secondOperand = 0;
+        label = null;
+        target = null;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+
+        if (!(o instanceof Instruction)) {
+            return false;
+        }
+
+        Instruction that = (Instruction) o;
+        return mnemonic == that.mnemonic
+                && operandCount == that.operandCount
+                && firstOperandKind == that.firstOperandKind
+                && secondOperandKind == that.secondOperandKind
+                && firstOperand == that.firstOperand
+                && secondOperand == that.secondOperand
+                && Objects.equals(label, that.label)
+                && Objects.equals(target, that.target);
+    }
+
+    @Override
+    public int hashCode() {
+        int hash = (mnemonic != null) ? mnemonic.hashCode() : 0;
+
+        hash = 31 * hash + firstOperandKind.hashCode();
+        hash = 31 * hash + secondOperandKind.hashCode();
+        hash = 31 * hash + Long.hashCode(firstOperand);
+        hash = 31 * hash + Long.hashCode(secondOperand);
+        hash = 31 * hash + Objects.hashCode(label);
+        hash = 31 * hash + Objects.hashCode(target);
+
+        return hash;
+    }
+}
@@ -0,0 +1,89 @@
+package com.serjihsklovski.ad.component;
+
+import java.util.Arrays;
+
+public enum Mnemonic {
+    MOV,
+    ADD,
+    NOT,
+    SHR,
+    JMP;
+
+    /**
+     * A perfect hash table of the names: the multiplier is chosen once so that no two names share a slot,
+     * hence a lookup hashes the text and compares it with a single candidate.
+     */
+    private static final Mnemonic[] HASH_TABLE = new Mnemonic[Integer.highestOneBit(4 * values().length)];
+    private static final int HASH_MULTIPLIER;
+
+    static {
+        int multiplier = 1;
+
+        while (!fillHashTable(multiplier)) {
+            multiplier += 2;
+        }
+
+        HASH_MULTIPLIER = multiplier;
+    }
+
+    private final String name = name().toLowerCase();
+
+    public String getName() {
+        return name;
+    }
+
+    public static Mnemonic forName(String name) {
+        return forName(name, 0, name.length());
+    }
+
+    /**
+     * Finds the mnemonic spelled by {@code text[start, end)}, ignoring the case.
+     *
+     * @return the mnemonic, or null if there is no such one
+     */
+    public static Mnemonic forName(CharSequence text, int start, int end) {
+        Mnemonic candidate = HASH_TABLE[hash(text, start, end, HASH_MULTIPLIER)];
+
+        if (candidate == null || candidate.name.length() != end - start) {
+            return null;
+        }
+
+        for (int i = start; i < end; i++) {
+            if (Character.toLowerCase(text.charAt(i)) != candidate.name.charAt(i - start)) {
+                return null;
+            }
+        }
+
+        return candidate;
+    }
+
+    private static boolean fillHashTable(int multiplier) {
+        Arrays.fill(HASH_TABLE, null);
+
+        for (Mnemonic mnemonic : values()) {
+            int slot = hash(mnemonic.name, 0, mnemonic.name.length(), multiplier);
+
+            if (HASH_TABLE[slot] != null) {
+                return false;
+            }
+
+            HASH_TABLE[slot] = mnemonic;
+        }
+
+        return true;
+    }
+
+    /**
+     * Folds ASCII letters to the lower case, so the hash does not depend on it.
+     */
+    private static int hash(CharSequence text, int start, int end, int multiplier) {
+        int hash = 0;
+
+        for (int i = start; i < end; i++) {
+            hash = hash * multiplier + (text.charAt(i) | 0x20);
+        }
+
+        hash ^= hash >>> 16;
+        return hash & (HASH_TABLE.length - 1);
+    }
+}
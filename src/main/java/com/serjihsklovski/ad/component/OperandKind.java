@@ -0,0 +1,8 @@
+package com.serjihsklovski.ad.component;
+
+public enum OperandKind {
+    NONE,
+    REGISTER,
+    IMMEDIATE,
+    LABEL,
+}
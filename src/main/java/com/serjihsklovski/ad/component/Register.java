@@ -0,0 +1,62 @@
+package com.serjihsklovski.ad.component;
+
+/**
+ * The supported registers; the ordinal of each one is its number in x86 encodings.
+ */
+public enum Register {
+    AX,
+    CX,
+    DX,
+    BX;
+
+    private static final Register[] REGISTERS = values();
+
+    private final String name = name().toLowerCase();
+
+    public String getName() {
+        return name;
+    }
+
+    public static Register forName(String name) {
+        for (Register register : REGISTERS) {
+            if (register.name.equals(name)) {
+                return register;
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * Finds the register spelled by {@code text[start, end)}, ignoring the case.
+     *
+     * @return the register, or null if there is no such one
+     */
+    public static Register forName(CharSequence text, int start, int end) {
+        for (Register register : REGISTERS) {
+            if (register.name.length() == end - start && matches(register.name, text, start)) {
+                return register;
+            }
+        }
+
+        return null;
+    }
+
+    private static boolean matches(String name, CharSequence text, int start) {
+        for (int i = 0; i < name.length(); i++) {
+            if (Character.toLowerCase(text.charAt(start + i)) != name.charAt(i)) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    public static Register forOrdinal(int ordinal) {
+        return REGISTERS[ordinal];
+    }
+
+    public static int count() {
+        return REGISTERS.length;
+    }
+}
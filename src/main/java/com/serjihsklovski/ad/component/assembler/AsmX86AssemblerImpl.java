@@ -1,232 +1,152 @@
 package com.serjihsklovski.ad.component.assembler;
 
-import com.serjihsklovski.ad.component.parser.AsmX86ParserUtils;
-import com.serjihsklovski.ad.component.OperationTreeNode;
+import com.serjihsklovski.ad.component.Instruction;
+import com.serjihsklovski.ad.component.encoding.EncodingTables;
+import com.serjihsklovski.ad.component.encoding.InstructionForm;
 
-import java.util.HashMap;
-import java.util.Map;
-import java.util.function.Function;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
 
 public class AsmX86AssemblerImpl implements Assembler {
 
-    private static final Map<String, Integer> REGISTER_TO_ORDER_NUMBER = new HashMap<>();
-
     private static final String EXCEPTION_MSG_UNKNOWN_COMMAND = "An unknown command or argument combination!";
 
+    /**
+     * The two lowercase ASCII hex digits of every byte value.
+     */
+    private static final byte[] HEX_DIGIT_PAIRS = new byte[2 * 256];
+
     static {
-        REGISTER_TO_ORDER_NUMBER.put("ax", 0);
-        REGISTER_TO_ORDER_NUMBER.put("cx", 1);
-        REGISTER_TO_ORDER_NUMBER.put("dx", 2);
-        REGISTER_TO_ORDER_NUMBER.put("bx", 3);
+        byte[] digits = "0123456789abcdef".getBytes(StandardCharsets.US_ASCII);
+
+        for (int b = 0; b < 256; b++) {
+            HEX_DIGIT_PAIRS[2 * b] = digits[b >> 4];
+            HEX_DIGIT_PAIRS[2 * b + 1] = digits[b & 0xf];
+        }
     }
 
     @Override
-    public String assemble(OperationTreeNode operation) {
-        String byteSource = "";
-
-        switch (operation.getValue().toLowerCase()) {
-            case "mov":
-                if (operation.getChildren().size() == 2) {
-                    String argTo = operation.getChildren().get(0).getValue();
-                    String argFrom = operation.getChildren().get(1).getValue();
-
-                    if (AsmX86ParserUtils.isRegister(argTo) && AsmX86ParserUtils.isRegister(argFrom)) {
-                        byteSource = assembleMovRegReg(argTo, argFrom);
-                    } else if (AsmX86ParserUtils.isRegister(argTo) && AsmX86ParserUtils.isValue(argFrom)) {
-                        byteSource = assembleMovRegVal(argTo, argFrom);
-                    } else {
-                        throw new RuntimeException(EXCEPTION_MSG_UNKNOWN_COMMAND);
-                    }
-                } else {
-                    throw new RuntimeException(EXCEPTION_MSG_UNKNOWN_COMMAND);
-                }
+    public String assemble(Instruction instruction) {
+        InstructionForm form = getForm(instruction);
+        ByteBuffer hex = ByteBuffer.allocate(2 * form.getLength());
 
-                break;
-
-            case "add":
-                if (operation.getChildren().size() == 2) {
-                    String argAcc = operation.getChildren().get(0).getValue();
-                    String argFrom = operation.getChildren().get(1).getValue();
-
-                    if (AsmX86ParserUtils.isRegister(argAcc) && AsmX86ParserUtils.isRegister(argFrom)) {
-                        byteSource = assembleAddRegReg(argAcc, argFrom);
-                    } else if (AsmX86ParserUtils.isRegister(argAcc) && AsmX86ParserUtils.isValue(argFrom)) {
-                        byteSource = assembleAddRegVal(argAcc, argFrom);
-                    } else {
-                        throw new RuntimeException(EXCEPTION_MSG_UNKNOWN_COMMAND);
-                    }
-                } else {
-                    throw new RuntimeException(EXCEPTION_MSG_UNKNOWN_COMMAND);
-                }
-
-                break;
-
-            case "not":
-                if (operation.getChildren().size() == 1) {
-                    String arg = operation.getChildren().get(0).getValue();
+        encodeHex(form, instruction, hex);
+        return new String(hex.array(), StandardCharsets.US_ASCII);
+    }
 
-                    if (AsmX86ParserUtils.isRegister(arg)) {
-                        byteSource = assembleNotReg(arg);
-                    } else {
-                        throw new RuntimeException(EXCEPTION_MSG_UNKNOWN_COMMAND);
-                    }
-                } else {
-                    throw new RuntimeException(EXCEPTION_MSG_UNKNOWN_COMMAND);
-                }
+    @Override
+    public byte[] assembleBytes(Instruction instruction) {
+        InstructionForm form = getForm(instruction);
+        ByteBuffer bytes = ByteBuffer.allocate(form.getLength());
 
-                break;
-
-            case "shr":
-                if (operation.getChildren().size() == 1) {
-                    String accArg = operation.getChildren().get(0).getValue();
-
-                    if (AsmX86ParserUtils.isRegister(accArg)) {
-                        byteSource = assembleShrRegVal(accArg, "1");
-                    } else {
-                        throw new RuntimeException(EXCEPTION_MSG_UNKNOWN_COMMAND);
-                    }
-                } else if (operation.getChildren().size() == 2) {
-                    String accArg = operation.getChildren().get(0).getValue();
-                    String valArg = operation.getChildren().get(1).getValue();
-
-                    if (AsmX86ParserUtils.isRegister(accArg) && AsmX86ParserUtils.isValue(valArg)) {
-                        byteSource = assembleShrRegVal(accArg, valArg);
-                    } else {
-                        throw new RuntimeException(EXCEPTION_MSG_UNKNOWN_COMMAND);
-                    }
-                } else {
-                    throw new RuntimeException(EXCEPTION_MSG_UNKNOWN_COMMAND);
-                }
+        encode(form, instruction, bytes);
+        return bytes.array();
+    }
 
-                break;
+    @Override
+    public int assembleInto(Instruction instruction, ByteBuffer buffer) {
+        InstructionForm form = getForm(instruction);
 
-            case "jmp":
-                if (operation.getChildren().size() == 1) {
-                    String addressArg = operation.getChildren().get(0).getValue();
+        if (buffer.remaining() < form.getLength()) {
+            throw new BufferOverflowException();
+        }
 
-                    if (AsmX86ParserUtils.isValue(addressArg)) {
-                        byteSource = assembleJmpVal(addressArg);
-                    } else {
-                        throw new RuntimeException(EXCEPTION_MSG_UNKNOWN_COMMAND);
-                    }
-                } else {
-                    throw new RuntimeException(EXCEPTION_MSG_UNKNOWN_COMMAND);
-                }
+        encode(form, instruction, buffer);
+        return form.getLength();
+    }
 
-                break;
+    @Override
+    public int assembleHexInto(Instruction instruction, ByteBuffer buffer) {
+        InstructionForm form = getForm(instruction);
 
-            default:
-                throw new RuntimeException(EXCEPTION_MSG_UNKNOWN_COMMAND);
+        if (buffer.remaining() < 2 * form.getLength()) {
+            throw new BufferOverflowException();
         }
 
-        return byteSource;
+        encodeHex(form, instruction, buffer);
+        return 2 * form.getLength();
     }
 
-    private String assembleMovRegReg(String regToArg, String regFromArg) {
-        int b = 192 + 8 * REGISTER_TO_ORDER_NUMBER.get(regFromArg) + REGISTER_TO_ORDER_NUMBER.get(regToArg);
-        return String.format("6689%s", Integer.toHexString(b));
+    @Override
+    public int getMaxInstructionLength() {
+        return EncodingTables.getMaxLength();
     }
 
-    private String assembleMovRegVal(String regToArg, String valFromArg) {
-        int b1 = 0xb8 + REGISTER_TO_ORDER_NUMBER.get(regToArg);
-        int val = (int) AsmX86ParserUtils.parseNumberFromString(valFromArg) % 0x10000;
-        int b2 = 0xff & val;
-        int b3 = 0xff & (val >> 8);
-
-        String b2Str = Integer.toHexString(b2);
-        b2Str = (b2 < 0xf) ? "0" + b2Str : b2Str;
-
-        String b3Str = Integer.toHexString(b3);
-        b3Str = (b3 < 0xf) ? "0" + b3Str : b3Str;
+    private static InstructionForm getForm(Instruction instruction) {
+        if (instruction.getMnemonic() != null) {
+            for (InstructionForm form : EncodingTables.getForms(instruction.getMnemonic())) {
+                if (form.matches(instruction)) {
+                    return form;
+                }
+            }
+        }
 
-        return String.format("66%s%s%s", Integer.toHexString(b1), b2Str, b3Str);
+        throw new RuntimeException(EXCEPTION_MSG_UNKNOWN_COMMAND);
     }
 
-    private String assembleAddRegReg(String regAccArg, String regFromArg) {
-        int b = 192 + 8 * REGISTER_TO_ORDER_NUMBER.get(regFromArg) + REGISTER_TO_ORDER_NUMBER.get(regAccArg);
-        return String.format("6601%s", Integer.toHexString(b));
-    }
+    /**
+     * Encodes the instruction into the upper half of the space it takes as hex, then expands it into digit
+     * pairs from the front: the pair of byte {@code i} never overwrites a byte that is still to be read.
+     */
+    private static void encodeHex(InstructionForm form, Instruction instruction, ByteBuffer buffer) {
+        int length = form.getLength();
+        int position = buffer.position();
 
-    private String assembleAddRegVal(String regToArg, String valFromArg) {
-        int val = (int) AsmX86ParserUtils.parseNumberFromString(valFromArg) % 0x10000;
-
-        if ((val >= 0x00) && (val < 0x80)) {
-            String valStr = Integer.toHexString(val);
-            valStr = (val < 0xf) ? "0" + valStr : valStr;
-
-            return String.format("6683%s%s",
-                    Integer.toHexString(0xc0 + REGISTER_TO_ORDER_NUMBER.get(regToArg)),
-                    valStr
-            );
-        } else if ((val >= 0x80) && (val < 0xff80)) {
-            int b1 = 0xff & val;
-            int b2 = 0xff & (val >> 8);
-
-            String b1Str = Integer.toHexString(b1);
-            b1Str = (b1 < 0xf) ? "0" + b1Str : b1Str;
-
-            String b2Str = Integer.toHexString(b2);
-            b2Str = (b2 < 0xf) ? "0" + b2Str : b2Str;
-
-            if (regToArg.equals("ax")) {
-                return String.format("6605%s%s", b1Str, b2Str);
-            } else {
-                return String.format("6681%s%s%s",
-                        Integer.toHexString(0xc0 + REGISTER_TO_ORDER_NUMBER.get(regToArg)),
-                        b1Str,
-                        b2Str
-                );
-            }
-        } else if ((val >= 0xff80) && (val < 0x10000)) {
-            int b = 0xff & val;
+        buffer.position(position + length);
+        encode(form, instruction, buffer);
+
+        for (int i = 0; i < length; i++) {
+            int b = buffer.get(position + length + i) & 0xff;
 
-            return String.format("6683%s%s",
-                    Integer.toHexString(0xc0 + REGISTER_TO_ORDER_NUMBER.get(regToArg)),
-                    Integer.toHexString(b)
-            );
+            buffer.put(position + 2 * i, HEX_DIGIT_PAIRS[2 * b]);
+            buffer.put(position + 2 * i + 1, HEX_DIGIT_PAIRS[2 * b + 1]);
         }
 
-        return null;
+        buffer.position(position + 2 * length);
     }
 
-    private String assembleNotReg(String regArg) {
-        return String.format("66f7%s", Integer.toHexString(0xd0 + REGISTER_TO_ORDER_NUMBER.get(regArg)));
-    }
+    private static void encode(InstructionForm form, Instruction instruction, ByteBuffer buffer) {
+        int opcode = form.getOpcode();
+        int modRMReg = form.getOpcodeExtension();
+        int modRMRm = 0;
+        long immediate = 0;
 
-    private String assembleShrRegVal(String regAccArg, String intValArg) {
-        int val = 0xff & (int) AsmX86ParserUtils.parseNumberFromString(intValArg);
+        for (int i = 0; i < instruction.getOperandCount(); i++) {
+            switch (form.getOperand(i)) {
+                case OPCODE_REGISTER:
+                    opcode += instruction.getRegister(i);
+                    break;
 
-        if (val == 0x1) {
-            return String.format("66d1%s", Integer.toHexString(0xe8 + REGISTER_TO_ORDER_NUMBER.get(regAccArg)));
-        }
+                case MODRM_RM:
+                    modRMRm = instruction.getRegister(i);
+                    break;
 
-        String valStr = Integer.toHexString(val);
-        valStr = (val < 0xf) ? "0" + valStr : valStr;
+                case MODRM_REG:
+                    modRMReg = instruction.getRegister(i);
+                    break;
 
-        return String.format("66c1%s%s",
-                Integer.toHexString(0xe8 + REGISTER_TO_ORDER_NUMBER.get(regAccArg)),
-                valStr
-        );
-    }
+                case IMMEDIATE:
+                    immediate = form.getImmediate().encode(instruction.getImmediate(i));
+                    break;
 
-    private String assembleJmpVal(String addressArg) {
-        long address = AsmX86ParserUtils.parseNumberFromString(addressArg) - 4;
+                default:
+                    break;
+            }
+        }
 
-        long b1 = 0xffL & address;
-        long b2 = 0xffL & (address >> 8);
-        long b3 = 0xffL & (address >> 16);
-        long b4 = 0xffL & (address >> 24);
+        if (form.hasOperandSizePrefix()) {
+            buffer.put((byte) InstructionForm.OPERAND_SIZE_PREFIX);
+        }
 
-        Function<Long, String> toHexString = val -> {
-            String str = Long.toHexString(val);
-            return (val < 0xfL) ? "0" + str : str;
-        };
+        buffer.put((byte) opcode);
 
-        String b1Str = toHexString.apply(b1);
-        String b2Str = toHexString.apply(b2);
-        String b3Str = toHexString.apply(b3);
-        String b4Str = toHexString.apply(b4);
+        if (form.hasModRM()) {
+            buffer.put((byte) EncodingTables.getModRM(modRMReg, modRMRm));
+        }
 
-        return String.format("e9%s%s%s%s", b1Str, b2Str, b3Str, b4Str);
+        for (int i = 0; i < form.getImmediate().getSize(); i++) {
+            buffer.put((byte) (immediate >> (8 * i)));
+        }
     }
 }
@@ -1,8 +1,33 @@
 package com.serjihsklovski.ad.component.assembler;
 
-import com.serjihsklovski.ad.component.OperationTreeNode;
+import com.serjihsklovski.ad.component.Instruction;
+
+import java.nio.ByteBuffer;
 
 public interface Assembler {
 
-    String assemble(OperationTreeNode operation);
+    String assemble(Instruction instruction);
+
+    byte[] assembleBytes(Instruction instruction);
+
+    /**
+     * Appends the machine code of the instruction at the buffer's position.
+     *
+     * @return the number of bytes appended
+     * @throws java.nio.BufferOverflowException if the code does not fit; the buffer is left unchanged
+     */
+    int assembleInto(Instruction instruction, ByteBuffer buffer);
+
+    /**
+     * Appends the machine code of the instruction as lowercase hex digits in ASCII at the buffer's position.
+     *
+     * @return the number of bytes appended
+     * @throws java.nio.BufferOverflowException if the digits do not fit; the buffer is left unchanged
+     */
+    int assembleHexInto(Instruction instruction, ByteBuffer buffer);
+
+    /**
+     * @return the maximum number of bytes {@link #assembleInto} appends for a single instruction
+     */
+    int getMaxInstructionLength();
 }
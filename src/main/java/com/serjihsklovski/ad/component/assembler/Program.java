@@ -0,0 +1,578 @@
+package com.serjihsklovski.ad.component.assembler;
+
+import com.serjihsklovski.ad.component.Instruction;
+import com.serjihsklovski.ad.component.encoding.InstructionForm;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Machine code with labels and jumps to them, assembled in two passes. The code between the jumps is encoded
+ * as it is appended, while the jumps are sized only by {@link #writeTo}, once every label is known: a jump
+ * takes the short form if its target is in range, and the near one otherwise.
+ * <p>
+ * The code is kept in the form it is written in, as raw bytes or as pairs of hex digits. {@link #flush} writes
+ * ahead the code whose jumps are already settled, keeping only the rest, and the addresses of the labels written.
+ */
+public class Program {
+
+    private static final int INITIAL_CAPACITY = 16;
+    private static final int MAX_CODE_LENGTH = Integer.MAX_VALUE - 8;
+
+    /**
+     * The {@link #labelJumps} of a label written by {@link #flush}, whose address is final.
+     */
+    private static final int FLUSHED = -1;
+
+    private static final InstructionForm SHORT_JUMP = InstructionForm.JMP_REL8;
+    private static final InstructionForm NEAR_JUMP = InstructionForm.JMP_REL32;
+
+    /**
+     * How far from a growing jump a short jump spanning it can start: its target is at most 128 bytes away,
+     * and the growth itself moves everything after the jump.
+     */
+    private static final int SHORT_JUMP_REACH = 128 + NEAR_JUMP.getLength();
+
+    private static final int JUMP_GROWTH = NEAR_JUMP.getLength() - SHORT_JUMP.getLength();
+
+    private static final byte UNSETTLED = 0;
+    private static final byte SETTLED_SHORT = 1;
+    private static final byte SETTLED_NEAR = 2;
+
+    private static final byte[] HEX_DIGITS = "0123456789abcdef".getBytes(StandardCharsets.US_ASCII);
+
+    private static final String EXCEPTION_MSG_DUPLICATE_LABEL = "`%s` - a duplicate label!";
+    private static final String EXCEPTION_MSG_UNDEFINED_LABEL = "`%s` - an undefined label!";
+    private static final String EXCEPTION_MSG_CODE_TOO_LARGE =
+            "The code after a jump to a label defined further on does not fit into memory!";
+
+    private final Assembler assembler;
+    private final boolean hex;
+
+    private byte[] code = new byte[INITIAL_CAPACITY];
+    private int codeLength;
+
+    /**
+     * The length in bytes of the code written by {@link #flush}, which the offsets are relative to.
+     */
+    private long base;
+
+    private int[] jumpOffsets = new int[INITIAL_CAPACITY];
+    private int[] jumpTargets = new int[INITIAL_CAPACITY];
+    private byte[] jumpStates = new byte[INITIAL_CAPACITY];
+    private int jumpCount;
+
+    private final Map<String, Integer> symbols = new HashMap<>();
+    private final List<String> labels = new ArrayList<>();
+    private int[] labelOffsets = new int[INITIAL_CAPACITY];
+    private int[] labelJumps = new int[INITIAL_CAPACITY];
+    private long[] labelAddresses = new long[INITIAL_CAPACITY];
+
+    /**
+     * The labels defined in the code not written yet.
+     */
+    private int[] pendingLabels = new int[INITIAL_CAPACITY];
+    private int pendingLabelCount;
+
+    /**
+     * @param hex whether the code is written as hex digits rather than raw bytes
+     */
+    public Program(Assembler assembler, boolean hex) {
+        this.assembler = assembler;
+        this.hex = hex;
+    }
+
+    /**
+     * @return whether any label is defined or referred to, without which the code is written as it is
+     */
+    public boolean hasLabels() {
+        return !labels.isEmpty();
+    }
+
+    /**
+     * @return the length of the code not written yet, in the program's form
+     */
+    public int getCodeLength() {
+        return codeLength;
+    }
+
+    /**
+     * Appends code without labels, already encoded in the program's form.
+     */
+    public void appendCode(byte[] code, int offset, int length) {
+        ensureCodeCapacity(length);
+        System.arraycopy(code, offset, this.code, codeLength, length);
+        codeLength += length;
+    }
+
+    /**
+     * Appends the instruction: defines its label, if any, and encodes it, leaving a jump to a label open.
+     */
+    public void add(Instruction instruction) {
+        if (instruction.getLabel() != null) {
+            define(getSymbol(instruction.getLabel()), codeLength, jumpCount);
+
+            if (instruction.getMnemonic() == null) {
+                return;
+            }
+        }
+
+        if (instruction.getTarget() != null) {
+            addJump(codeLength, getSymbol(instruction.getTarget()));
+            return;
+        }
+
+        int maxLength = assembler.getMaxInstructionLength();
+        ensureCodeCapacity(hex ? 2 * maxLength : maxLength);
+
+        ByteBuffer buffer = ByteBuffer.wrap(code, codeLength, code.length - codeLength);
+        codeLength += hex
+                ? assembler.assembleHexInto(instruction, buffer)
+                : assembler.assembleInto(instruction, buffer);
+    }
+
+    /**
+     * Appends another program in the same form; its labels share the names with the labels of this one.
+     */
+    public void append(Program program) {
+        int codeBase = codeLength;
+        int jumpBase = jumpCount;
+        int[] programSymbols = new int[program.labels.size()];
+
+        for (int i = 0; i < programSymbols.length; i++) {
+            programSymbols[i] = getSymbol(program.labels.get(i));
+        }
+
+        appendCode(program.code, 0, program.codeLength);
+
+        for (int i = 0; i < program.jumpCount; i++) {
+            addJump(codeBase + program.jumpOffsets[i], programSymbols[program.jumpTargets[i]]);
+        }
+
+        for (int i = 0; i < programSymbols.length; i++) {
+            if (program.labelOffsets[i] >= 0) {
+                define(programSymbols[i], codeBase + program.labelOffsets[i], jumpBase + program.labelJumps[i]);
+            }
+        }
+    }
+
+    /**
+     * Writes the program as it is before linking, for {@link #appendUnlinked} to read back: its code, and its
+     * labels and jumps by the names of the labels. The program must not have been flushed.
+     */
+    public void writeUnlinked(DataOutput out) throws IOException {
+        out.writeInt(codeLength);
+        out.write(code, 0, codeLength);
+        out.writeInt(labels.size());
+
+        for (int i = 0; i < labels.size(); i++) {
+            out.writeUTF(labels.get(i));
+            out.writeInt(labelOffsets[i]);
+            out.writeInt(labelJumps[i]);
+        }
+
+        out.writeInt(jumpCount);
+
+        for (int i = 0; i < jumpCount; i++) {
+            out.writeInt(jumpOffsets[i]);
+            out.writeInt(jumpTargets[i]);
+        }
+    }
+
+    /**
+     * Appends a program written by {@link #writeUnlinked} in the same form, as {@link #append} does.
+     */
+    public void appendUnlinked(DataInput in) throws IOException {
+        int codeBase = codeLength;
+        int jumpBase = jumpCount;
+        int length = in.readInt();
+
+        ensureCodeCapacity(length);
+        in.readFully(code, codeLength, length);
+        codeLength += length;
+
+        int[] programSymbols = new int[in.readInt()];
+        int[] programLabelOffsets = new int[programSymbols.length];
+        int[] programLabelJumps = new int[programSymbols.length];
+
+        for (int i = 0; i < programSymbols.length; i++) {
+            programSymbols[i] = getSymbol(in.readUTF());
+            programLabelOffsets[i] = in.readInt();
+            programLabelJumps[i] = in.readInt();
+        }
+
+        int programJumpCount = in.readInt();
+
+        for (int i = 0; i < programJumpCount; i++) {
+            int offset = in.readInt();
+            addJump(codeBase + offset, programSymbols[in.readInt()]);
+        }
+
+        for (int i = 0; i < programSymbols.length; i++) {
+            if (programLabelOffsets[i] >= 0) {
+                define(programSymbols[i], codeBase + programLabelOffsets[i], jumpBase + programLabelJumps[i]);
+            }
+        }
+    }
+
+    /**
+     * Sizes the jumps and writes the code with them.
+     *
+     * @throws RuntimeException if a jump refers to an undefined label
+     */
+    public void writeTo(OutputStream out) throws IOException {
+        for (int i = 0; i < labels.size(); i++) {
+            if (labelOffsets[i] < 0) {
+                throw new RuntimeException(String.format(EXCEPTION_MSG_UNDEFINED_LABEL, labels.get(i)));
+            }
+        }
+
+        write(out, relax(), jumpCount, codeLength);
+    }
+
+    /**
+     * Writes the code up to the first jump whose size is not settled yet, or to one whose target is past it. The
+     * code written is final, so the rest is linked as if it had been kept.
+     */
+    public void flush(OutputStream out) throws IOException {
+        settleJumps();
+
+        int settled = 0;
+
+        while (settled < jumpCount && jumpStates[settled] != UNSETTLED) {
+            settled++;
+        }
+
+        boolean[] near = new boolean[settled];
+        int jumps = 0;
+
+        for (int i = 0; i < settled; i++) {
+            near[i] = jumpStates[i] == SETTLED_NEAR;
+        }
+
+        while (jumps < settled && labelJumps[jumpTargets[jumps]] <= settled) {
+            jumps++;
+        }
+
+        write(out, near, jumps, (jumps < jumpCount) ? jumpOffsets[jumps] : codeLength);
+    }
+
+    /**
+     * Settles the size of every jump to a defined label that does not depend on the unsettled jumps it spans:
+     * short if its target is in range even with all of them near, near if it is out of range even with all of
+     * them short. More code can only come after the label, so the size is final.
+     */
+    private void settleJumps() {
+        int[] nearBefore = new int[jumpCount + 1];
+        int[] unsettledBefore = new int[jumpCount + 1];
+        boolean settling = true;
+
+        while (settling) {
+            settling = false;
+
+            for (int i = 0; i < jumpCount; i++) {
+                nearBefore[i + 1] = nearBefore[i] + ((jumpStates[i] == SETTLED_NEAR) ? 1 : 0);
+                unsettledBefore[i + 1] = unsettledBefore[i] + ((jumpStates[i] == UNSETTLED) ? 1 : 0);
+            }
+
+            for (int i = 0; i < jumpCount; i++) {
+                if (jumpStates[i] != UNSETTLED || labelOffsets[jumpTargets[i]] < 0) {
+                    continue;
+                }
+
+                if (fitsShort(i, nearBefore, unsettledBefore, true)) {
+                    jumpStates[i] = SETTLED_SHORT;
+                    settling = true;
+                } else if (!fitsShort(i, nearBefore, unsettledBefore, false)) {
+                    jumpStates[i] = SETTLED_NEAR;
+                    settling = true;
+                }
+            }
+        }
+    }
+
+    /**
+     * @param unsettledNear whether the unsettled jumps but this one are taken near rather than short
+     */
+    private boolean fitsShort(int jump, int[] nearBefore, int[] unsettledBefore, boolean unsettledNear) {
+        int label = jumpTargets[jump];
+        long address = base + toBytes(jumpOffsets[jump])
+                + getJumpsLength(jump, nearBefore, unsettledBefore, unsettledNear);
+
+        if (labelJumps[label] == FLUSHED) {
+            return SHORT_JUMP.getImmediate().fits(labelAddresses[label] - address - 1);
+        }
+
+        long target = base + toBytes(labelOffsets[label])
+                + getJumpsLength(labelJumps[label], nearBefore, unsettledBefore, unsettledNear);
+
+        if (unsettledNear && labelJumps[label] > jump) {
+            target -= JUMP_GROWTH;
+        }
+
+        return SHORT_JUMP.getImmediate().fits(target - address - 1);
+    }
+
+    private static long getJumpsLength(int jumps, int[] nearBefore, int[] unsettledBefore, boolean unsettledNear) {
+        long nearJumps = nearBefore[jumps] + (unsettledNear ? unsettledBefore[jumps] : 0);
+        return (long) jumps * SHORT_JUMP.getLength() + nearJumps * JUMP_GROWTH;
+    }
+
+    /**
+     * Writes the leading jumps and the code up to {@code codeEnd} with them, and keeps the rest.
+     *
+     * @param near whether each of the jumps sized is near; the targets of the jumps written are all before the
+     *             first jump not sized
+     */
+    private void write(OutputStream out, boolean[] near, int jumps, int codeEnd) throws IOException {
+        long[] shifts = new long[near.length + 1];
+
+        shifts[0] = base;
+
+        for (int i = 0; i < near.length; i++) {
+            shifts[i + 1] = shifts[i] + getJumpForm(near, i).getLength();
+        }
+
+        byte[] jump = new byte[2 * NEAR_JUMP.getLength()];
+        int written = 0;
+
+        for (int i = 0; i < jumps; i++) {
+            int label = jumpTargets[i];
+            long target = (labelJumps[label] == FLUSHED)
+                    ? labelAddresses[label]
+                    : toBytes(labelOffsets[label]) + shifts[labelJumps[label]];
+            long address = toBytes(jumpOffsets[i]) + shifts[i];
+
+            out.write(code, written, jumpOffsets[i] - written);
+            written = jumpOffsets[i];
+            out.write(jump, 0, encodeJump(getJumpForm(near, i), target - address - 1, jump));
+        }
+
+        out.write(code, written, codeEnd - written);
+        settleLabels(jumps, codeEnd, shifts);
+
+        System.arraycopy(code, codeEnd, code, 0, codeLength - codeEnd);
+        codeLength -= codeEnd;
+        jumpCount -= jumps;
+
+        for (int i = 0; i < jumpCount; i++) {
+            jumpOffsets[i] = jumpOffsets[jumps + i] - codeEnd;
+            jumpTargets[i] = jumpTargets[jumps + i];
+            jumpStates[i] = jumpStates[jumps + i];
+        }
+
+        base = shifts[jumps] + toBytes(codeEnd);
+    }
+
+    /**
+     * Fixes the addresses of the labels in the code written, and moves the others to the code kept.
+     */
+    private void settleLabels(int jumps, int codeEnd, long[] shifts) {
+        int pending = 0;
+
+        for (int i = 0; i < pendingLabelCount; i++) {
+            int label = pendingLabels[i];
+
+            if (labelJumps[label] <= jumps) {
+                labelAddresses[label] = toBytes(labelOffsets[label]) + shifts[labelJumps[label]];
+                labelJumps[label] = FLUSHED;
+            } else {
+                labelOffsets[label] -= codeEnd;
+                labelJumps[label] -= jumps;
+                pendingLabels[pending++] = label;
+            }
+        }
+
+        pendingLabelCount = pending;
+    }
+
+    /**
+     * @return the linked code, as {@link #writeTo} writes it
+     */
+    public byte[] toByteArray() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(codeLength);
+        writeTo(out);
+        return out.toByteArray();
+    }
+
+    /**
+     * Starts with every jump short and grows those whose targets are out of range. A growth only pushes apart
+     * what the short jumps around it span, so just the jumps within {@link #SHORT_JUMP_REACH} bytes of it are
+     * checked again, and every jump grows at most once: the relaxation stays near-linear in the jumps.
+     *
+     * @return whether each jump is near
+     */
+    private boolean[] relax() {
+        boolean[] near = new boolean[jumpCount];
+        boolean[] pending = new boolean[jumpCount];
+        int[] grown = new int[jumpCount + 1];
+        int[] stack = new int[jumpCount];
+        int stackSize = 0;
+
+        for (int i = jumpCount - 1; i >= 0; i--) {
+            stack[stackSize++] = i;
+            pending[i] = true;
+        }
+
+        while (stackSize > 0) {
+            int jump = stack[--stackSize];
+            pending[jump] = false;
+
+            if (near[jump] || fitsShort(jump, grown)) {
+                continue;
+            }
+
+            near[jump] = true;
+
+            for (int i = jump + 1; i <= jumpCount; i += i & -i) {
+                grown[i]++;
+            }
+
+            long address = getJumpAddress(jump, grown);
+
+            for (int i = jump - 1; i >= 0 && address - getJumpAddress(i, grown) <= SHORT_JUMP_REACH; i--) {
+                if (!near[i] && !pending[i]) {
+                    stack[stackSize++] = i;
+                    pending[i] = true;
+                }
+            }
+
+            for (int i = jump + 1; i < jumpCount && getJumpAddress(i, grown) - address <= SHORT_JUMP_REACH; i++) {
+                if (!near[i] && !pending[i]) {
+                    stack[stackSize++] = i;
+                    pending[i] = true;
+                }
+            }
+        }
+
+        return near;
+    }
+
+    private boolean fitsShort(int jump, int[] grown) {
+        int label = jumpTargets[jump];
+        long target = (labelJumps[label] == FLUSHED)
+                ? labelAddresses[label]
+                : base + toBytes(labelOffsets[label]) + getJumpsLength(labelJumps[label], grown);
+
+        return SHORT_JUMP.getImmediate().fits(target - getJumpAddress(jump, grown) - 1);
+    }
+
+    private long getJumpAddress(int jump, int[] grown) {
+        return base + toBytes(jumpOffsets[jump]) + getJumpsLength(jump, grown);
+    }
+
+    /**
+     * @return the length of the first {@code jumps} jumps, {@code grown} being the Fenwick tree of the near ones
+     */
+    private long getJumpsLength(int jumps, int[] grown) {
+        long nearJumps = 0;
+
+        for (int i = jumps; i > 0; i -= i & -i) {
+            nearJumps += grown[i];
+        }
+
+        return (long) jumps * SHORT_JUMP.getLength() + nearJumps * JUMP_GROWTH;
+    }
+
+    private static InstructionForm getJumpForm(boolean[] near, int jump) {
+        return near[jump] ? NEAR_JUMP : SHORT_JUMP;
+    }
+
+    /**
+     * @return the number of bytes of the encoded jump in {@code out}
+     */
+    private int encodeJump(InstructionForm form, long displacement, byte[] out) {
+        long immediate = form.getImmediate().encode(displacement);
+        int length = form.getLength();
+
+        for (int i = length - 1; i >= 0; i--) {
+            int b = (i == 0) ? form.getOpcode() : (int) (immediate >> (8 * (i - 1))) & 0xff;
+
+            if (hex) {
+                out[2 * i] = HEX_DIGITS[b >> 4];
+                out[2 * i + 1] = HEX_DIGITS[b & 0xf];
+            } else {
+                out[i] = (byte) b;
+            }
+        }
+
+        return hex ? 2 * length : length;
+    }
+
+    private long toBytes(int codeOffset) {
+        return hex ? codeOffset / 2 : codeOffset;
+    }
+
+    private int getSymbol(String label) {
+        Integer symbol = symbols.get(label);
+
+        if (symbol != null) {
+            return symbol;
+        }
+
+        symbol = labels.size();
+
+        if (symbol == labelOffsets.length) {
+            labelOffsets = Arrays.copyOf(labelOffsets, 2 * symbol);
+            labelJumps = Arrays.copyOf(labelJumps, 2 * symbol);
+            labelAddresses = Arrays.copyOf(labelAddresses, 2 * symbol);
+        }
+
+        labels.add(label);
+        labelOffsets[symbol] = -1;
+        symbols.put(label, symbol);
+        return symbol;
+    }
+
+    private void define(int symbol, int codeOffset, int jumps) {
+        if (labelOffsets[symbol] >= 0) {
+            throw new RuntimeException(String.format(EXCEPTION_MSG_DUPLICATE_LABEL, labels.get(symbol)));
+        }
+
+        labelOffsets[symbol] = codeOffset;
+        labelJumps[symbol] = jumps;
+
+        if (pendingLabelCount == pendingLabels.length) {
+            pendingLabels = Arrays.copyOf(pendingLabels, 2 * pendingLabelCount);
+        }
+
+        pendingLabels[pendingLabelCount++] = symbol;
+    }
+
+    private void addJump(int codeOffset, int symbol) {
+        if (jumpCount == jumpOffsets.length) {
+            jumpOffsets = Arrays.copyOf(jumpOffsets, 2 * jumpCount);
+            jumpTargets = Arrays.copyOf(jumpTargets, 2 * jumpCount);
+            jumpStates = Arrays.copyOf(jumpStates, 2 * jumpCount);
+        }
+
+        jumpOffsets[jumpCount] = codeOffset;
+        jumpTargets[jumpCount] = symbol;
+        jumpStates[jumpCount] = UNSETTLED;
+        jumpCount++;
+    }
+
+    /**
+     * @throws RuntimeException if the code would outgrow the largest array
+     */
+    private void ensureCodeCapacity(int length) {
+        if (length > MAX_CODE_LENGTH - codeLength) {
+            throw new RuntimeException(EXCEPTION_MSG_CODE_TOO_LARGE);
+        }
+
+        if (code.length - codeLength < length) {
+            long capacity = Math.max(2L * code.length, codeLength + length);
+            code = Arrays.copyOf(code, (int) Math.min(MAX_CODE_LENGTH, capacity));
+        }
+    }
+}
@@ -1,297 +1,196 @@
 package com.serjihsklovski.ad.component.disassembler;
 
-import com.serjihsklovski.ad.component.OperationTreeNode;
-import com.serjihsklovski.ad.component.parser.AsmX86ParserUtils;
+import com.serjihsklovski.ad.component.Instruction;
+import com.serjihsklovski.ad.component.Register;
+import com.serjihsklovski.ad.component.encoding.EncodingTables;
+import com.serjihsklovski.ad.component.encoding.ImmediateEncoding;
+import com.serjihsklovski.ad.component.encoding.InstructionForm;
 
-import java.util.*;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
 
 public class AsmX86DisassemblerImpl implements Disassembler {
 
-    private static final Map<Integer, String> ORDER_NUMBER_TO_REGISTER = new HashMap<>();
-
     private static final String EXCEPTION_MSG_UNSUPPORTED_INSTRUCTION = "An unsupported instruction!";
-
-    private enum DisassemblerState {
-        NEW_INSTRUCTION,
-        INSTR_66XX,
-        INSTR_MOV_REG_REG,
-        INSTR_MOV_REG_VAL,
-        INSTR_ADD_REG_REG,
-        INSTR_ADD_REG_VAL_83,
-        INSTR_ADD_REG_VAL_81,
-        INSTR_ADD_REG_VAL_05,
-        INSTR_NOT,
-        INSTR_SHR_D1,
-        INSTR_SHR_C1,
-        INSTR_JMP,
-    }
-
-    static {
-        ORDER_NUMBER_TO_REGISTER.put(0, "ax");
-        ORDER_NUMBER_TO_REGISTER.put(1, "cx");
-        ORDER_NUMBER_TO_REGISTER.put(2, "dx");
-        ORDER_NUMBER_TO_REGISTER.put(3, "bx");
-    }
+    private static final String EXCEPTION_MSG_INCOMPLETE_INSTRUCTION = "An incomplete instruction!";
+    private static final String EXCEPTION_MSG_NOT_A_HEX_DIGIT = "`%s` - not a hex digit!";
 
     @Override
-    public List<OperationTreeNode> disassemble(String byteSource) {
-        List<OperationTreeNode> operationTreeNodes = new ArrayList<>();
-        List<String> bytes = getBytes(byteSource);
-
-        DisassemblerState state = DisassemblerState.NEW_INSTRUCTION;
-        List<String> instruction = new ArrayList<>();
-
-        for (int i = 0; i < bytes.size(); i++) {
-            switch (state) {
-                case NEW_INSTRUCTION:
-                    instruction.clear();
-                    instruction.add(bytes.get(i));
-
-                    switch (bytes.get(i)) {
-                        case "66":
-                            state = DisassemblerState.INSTR_66XX;
-                            continue;
-
-                        case "e9":
-                            state = DisassemblerState.INSTR_JMP;
-                            continue;
-
-                        default:
-                            throw new RuntimeException(EXCEPTION_MSG_UNSUPPORTED_INSTRUCTION);
-                    }
-
-                case INSTR_66XX:
-                    instruction.add(bytes.get(i));
-
-                    switch (bytes.get(i)) {
-                        case "89":
-                            state = DisassemblerState.INSTR_MOV_REG_REG;
-                            continue;
-
-                        case "b8":
-                        case "b9":
-                        case "ba":
-                        case "bb":
-                            state = DisassemblerState.INSTR_MOV_REG_VAL;
-                            continue;
-
-                        case "01":
-                            state = DisassemblerState.INSTR_ADD_REG_REG;
-                            continue;
-
-                        case "83":
-                            state = DisassemblerState.INSTR_ADD_REG_VAL_83;
-                            continue;
-
-                        case "81":
-                            state = DisassemblerState.INSTR_ADD_REG_VAL_81;
-                            continue;
-
-                        case "05":
-                            state = DisassemblerState.INSTR_ADD_REG_VAL_05;
-                            continue;
-
-                        case "f7":
-                            state = DisassemblerState.INSTR_NOT;
-                            continue;
-
-                        case "d1":
-                            state = DisassemblerState.INSTR_SHR_D1;
-                            continue;
-
-                        case "c1":
-                            state = DisassemblerState.INSTR_SHR_C1;
-                            continue;
-
-                        default:
-                            throw new RuntimeException(EXCEPTION_MSG_UNSUPPORTED_INSTRUCTION);
-                    }
-
-                case INSTR_MOV_REG_REG:
-                    operationTreeNodes.add(disassembleMovRegReg(bytes.get(i)));
-                    state = DisassemblerState.NEW_INSTRUCTION;
-                    break;
-
-                case INSTR_MOV_REG_VAL:
-                    operationTreeNodes.add(disassembleMovRegVal(instruction.get(1), bytes.get(i), bytes.get(i + 1)));
-                    i += 1;
-                    state = DisassemblerState.NEW_INSTRUCTION;
-                    break;
-
-                case INSTR_ADD_REG_REG:
-                    operationTreeNodes.add(disassembleAddRegReg(bytes.get(i)));
-                    state = DisassemblerState.NEW_INSTRUCTION;
-                    break;
-
-                case INSTR_ADD_REG_VAL_83:
-                    operationTreeNodes.add(disassembleAddRegVal83(bytes.get(i), bytes.get(i + 1)));
-                    i += 1;
-                    state = DisassemblerState.NEW_INSTRUCTION;
-                    break;
-
-                case INSTR_ADD_REG_VAL_81:
-                    operationTreeNodes.add(disassembleAddRegVal81(bytes.get(i), bytes.get(i + 1), bytes.get(i + 2)));
-                    i += 2;
-                    state = DisassemblerState.NEW_INSTRUCTION;
-                    break;
-
-                case INSTR_ADD_REG_VAL_05:
-                    operationTreeNodes.add(disassembleAddRegVal05(bytes.get(i), bytes.get(i + 1)));
-                    i += 1;
-                    state = DisassemblerState.NEW_INSTRUCTION;
-                    break;
+    public List<Instruction> disassemble(String byteSource) {
+        List<Instruction> instructions = new ArrayList<>();
 
-                case INSTR_NOT:
-                    operationTreeNodes.add(disassembleNot(bytes.get(i)));
-                    state = DisassemblerState.NEW_INSTRUCTION;
-                    break;
-
-                case INSTR_SHR_D1:
-                    operationTreeNodes.add(disassembleShrRegValD1(bytes.get(i)));
-                    state = DisassemblerState.NEW_INSTRUCTION;
-                    break;
-
-                case INSTR_SHR_C1:
-                    operationTreeNodes.add(disassembleShrRegValC1(bytes.get(i), bytes.get(i + 1)));
-                    i += 1;
-                    state = DisassemblerState.NEW_INSTRUCTION;
-                    break;
-
-                case INSTR_JMP:
-                    operationTreeNodes.add(disassembleJmp(bytes.get(i), bytes.get(i + 1), bytes.get(i + 2), bytes.get(i + 3)));
-                    i += 3;
-                    state = DisassemblerState.NEW_INSTRUCTION;
-                    break;
-            }
+        if (disassemble(byteSource, instructions::add) < byteSource.length() - 1) {
+            throw new RuntimeException(EXCEPTION_MSG_INCOMPLETE_INSTRUCTION);
         }
 
-        return operationTreeNodes;
+        return instructions;
     }
 
-    private List<String> getBytes(String byteSource) {
-        List<String> bytes = new ArrayList<>();
+    @Override
+    public int disassemble(CharSequence byteSource, Consumer<Instruction> consumer) {
+        ByteBuffer bytes = ByteBuffer.wrap(getBytes(byteSource));
+        disassemble(bytes, consumer);
+        return 2 * bytes.position();
+    }
+
+    @Override
+    public void disassemble(ByteBuffer bytes, Consumer<Instruction> consumer) {
+        int index = bytes.position();
+        int limit = bytes.limit();
+        int length;
 
-        for (int i = 0; i < byteSource.length() - 1; i += 2) {
-            bytes.add(byteSource.substring(i, i + 2).toLowerCase());
+        while (index < limit && (length = disassembleInstruction(bytes, index, limit, consumer)) > 0) {
+            index += length;
         }
 
-        return bytes;
+        bytes.position(index);
     }
 
-    private OperationTreeNode disassembleMovRegReg(String registersByteStr) {
-        int registersByte = Integer.valueOf(registersByteStr, 16) - 0xc0;
-        int r1 = registersByte % 4;
-        int r2 = (registersByte - r1) / 8;
-
-        OperationTreeNode otn = new OperationTreeNode("mov");
-
-        otn.addChild(new OperationTreeNode(ORDER_NUMBER_TO_REGISTER.get(r1)));
-        otn.addChild(new OperationTreeNode(ORDER_NUMBER_TO_REGISTER.get(r2)));
+    @Override
+    public int disassembleInstruction(ByteBuffer bytes, int index, Consumer<Instruction> consumer) {
+        return disassembleInstruction(bytes, index, bytes.limit(), consumer);
+    }
 
-        return otn;
+    @Override
+    public int getInstructionLength(ByteBuffer bytes, int index) {
+        InstructionForm form = getForm(bytes, index, bytes.limit());
+        return (form != null && form.getLength() <= bytes.limit() - index) ? form.getLength() : 0;
     }
 
-    private OperationTreeNode disassembleMovRegVal(String registerByte, String b1Str, String b2Str) {
-        int register = Integer.valueOf(registerByte, 16) - 0xb8;
-        int val = Integer.valueOf(b2Str + b1Str, 16);
+    /**
+     * @return the length of the decoded instruction, or 0 if it does not fit before {@code limit}
+     */
+    private int disassembleInstruction(ByteBuffer bytes, int index, int limit, Consumer<Instruction> consumer) {
+        InstructionForm form = getForm(bytes, index, limit);
 
-        OperationTreeNode otn = new OperationTreeNode("mov");
+        if (form == null || form.getLength() > limit - index) {
+            return 0;
+        }
 
-        otn.addChild(new OperationTreeNode(ORDER_NUMBER_TO_REGISTER.get(register)));
-        otn.addChild(new OperationTreeNode(AsmX86ParserUtils.encodeNumberToString(val, AsmX86ParserUtils.Radix.HEX)));
+        int opcodeIndex = form.hasOperandSizePrefix() ? index + 1 : index;
 
-        return otn;
+        consumer.accept(decode(form, getUnsignedByte(bytes, opcodeIndex), bytes, opcodeIndex + 1));
+        return form.getLength();
     }
 
-    private OperationTreeNode disassembleAddRegReg(String registersByteStr) {
-        int registersByte = Integer.valueOf(registersByteStr, 16) - 0xc0;
-        int r1 = registersByte % 4;
-        int r2 = (registersByte - r1) / 8;
+    /**
+     * @return the form selected by the opcode at {@code index}, or null if the opcode does not fit before
+     * {@code limit}
+     */
+    private static InstructionForm getForm(ByteBuffer bytes, int index, int limit) {
+        int opcode = getUnsignedByte(bytes, index);
+        InstructionForm form;
+
+        if (opcode == InstructionForm.OPERAND_SIZE_PREFIX) {
+            if (limit - index < 2) {
+                return null;
+            }
 
-        OperationTreeNode otn = new OperationTreeNode("add");
+            form = EncodingTables.getPrefixedForm(getUnsignedByte(bytes, index + 1));
+        } else {
+            form = EncodingTables.getPrimaryForm(opcode);
+        }
 
-        otn.addChild(new OperationTreeNode(ORDER_NUMBER_TO_REGISTER.get(r1)));
-        otn.addChild(new OperationTreeNode(ORDER_NUMBER_TO_REGISTER.get(r2)));
+        if (form == null) {
+            throw new RuntimeException(EXCEPTION_MSG_UNSUPPORTED_INSTRUCTION);
+        }
 
-        return otn;
+        return form;
     }
 
-    private OperationTreeNode disassembleAddRegVal83(String registerByteStr, String valStr) {
-        int registerByte = Integer.valueOf(registerByteStr, 16);
-        int val = Integer.valueOf(valStr, 16);
+    /**
+     * Decodes the operands of an instruction of the form, {@code index} pointing past its opcode.
+     */
+    private static Instruction decode(InstructionForm form, int opcode, ByteBuffer bytes, int index) {
+        Instruction instruction = new Instruction(form.getMnemonic());
+        int modRM = 0;
 
-        if (val >= 0x80) {
-            val |= 0xff00;
+        if (form.hasModRM()) {
+            modRM = getUnsignedByte(bytes, index++);
+
+            if (form.getOpcodeExtension() >= 0
+                    && EncodingTables.getModRMOpcodeExtension(modRM) != form.getOpcodeExtension()) {
+                throw new RuntimeException(EXCEPTION_MSG_UNSUPPORTED_INSTRUCTION);
+            }
         }
 
-        OperationTreeNode otn = new OperationTreeNode("add");
+        for (int i = 0; i < Instruction.MAX_OPERANDS; i++) {
+            switch (form.getOperand(i)) {
+                case OPCODE_REGISTER:
+                    instruction.addRegister(Register.forOrdinal(opcode - form.getOpcode()));
+                    break;
 
-        otn.addChild(new OperationTreeNode(ORDER_NUMBER_TO_REGISTER.get(registerByte - 0xc0)));
-        otn.addChild(new OperationTreeNode(AsmX86ParserUtils.encodeNumberToString(val, AsmX86ParserUtils.Radix.HEX)));
+                case MODRM_RM:
+                    instruction.addRegister(getRegister(EncodingTables.getModRMRmRegister(modRM)));
+                    break;
 
-        return otn;
-    }
+                case MODRM_REG:
+                    instruction.addRegister(getRegister(EncodingTables.getModRMRegRegister(modRM)));
+                    break;
 
-    private OperationTreeNode disassembleAddRegVal81(String registerByteStr, String b1Str, String b2Str) {
-        int registerByte = Integer.valueOf(registerByteStr, 16);
-        int b1 = Integer.valueOf(b1Str, 16);
-        int b2 = Integer.valueOf(b2Str, 16);
-        int val = b1 | (b2 << 8);
+                case IMPLICIT_AX:
+                    instruction.addRegister(Register.AX);
+                    break;
 
-        OperationTreeNode otn = new OperationTreeNode("add");
+                case IMPLICIT_ONE:
+                    instruction.addImmediate(1);
+                    break;
 
-        otn.addChild(new OperationTreeNode(ORDER_NUMBER_TO_REGISTER.get(registerByte - 0xc0)));
-        otn.addChild(new OperationTreeNode(AsmX86ParserUtils.encodeNumberToString(val, AsmX86ParserUtils.Radix.HEX)));
+                case IMMEDIATE:
+                    ImmediateEncoding immediate = form.getImmediate();
+                    instruction.addImmediate(immediate.decode(getLittleEndian(bytes, index, immediate.getSize())));
+                    break;
 
-        return otn;
-    }
+                default:
+                    break;
+            }
+        }
 
-    private OperationTreeNode disassembleAddRegVal05(String b1Str, String b2Str) {
-        int b1 = Integer.valueOf(b1Str, 16);
-        int b2 = Integer.valueOf(b2Str, 16);
-        int val = b1 | (b2 << 8);
+        return instruction;
+    }
 
-        OperationTreeNode otn = new OperationTreeNode("add");
+    private static int getUnsignedByte(ByteBuffer bytes, int index) {
+        return bytes.get(index) & 0xff;
+    }
 
-        otn.addChild(new OperationTreeNode("ax"));
-        otn.addChild(new OperationTreeNode(AsmX86ParserUtils.encodeNumberToString(val, AsmX86ParserUtils.Radix.HEX)));
+    private static long getLittleEndian(ByteBuffer bytes, int index, int size) {
+        long value = 0;
 
-        return otn;
-    }
+        for (int i = size - 1; i >= 0; i--) {
+            value = (value << 8) | getUnsignedByte(bytes, index + i);
+        }
 
-    private OperationTreeNode disassembleNot(String registerByteStr) {
-        OperationTreeNode otn = new OperationTreeNode("not");
-        otn.addChild(new OperationTreeNode(ORDER_NUMBER_TO_REGISTER.get(Integer.valueOf(registerByteStr, 16) - 0xd0)));
-        return otn;
+        return value;
     }
 
-    private OperationTreeNode disassembleShrRegValD1(String registerByteStr) {
-        int register = Integer.valueOf(registerByteStr, 16) - 0xe8;
-
-        OperationTreeNode otn = new OperationTreeNode("shr");
+    @Override
+    public byte[] getBytes(CharSequence byteSource) {
+        byte[] bytes = new byte[byteSource.length() / 2];
 
-        otn.addChild(new OperationTreeNode(ORDER_NUMBER_TO_REGISTER.get(register)));
-        otn.addChild(new OperationTreeNode("0x1"));
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = (byte) ((getHexDigit(byteSource, 2 * i) << 4) | getHexDigit(byteSource, 2 * i + 1));
+        }
 
-        return otn;
+        return bytes;
     }
 
-    private OperationTreeNode disassembleShrRegValC1(String registerByteStr, String valStr) {
-        int register = Integer.valueOf(registerByteStr, 16) - 0xe8;
-        int val = Integer.valueOf(valStr, 16);
-
-        OperationTreeNode otn = new OperationTreeNode("shr");
+    private int getHexDigit(CharSequence byteSource, int index) {
+        int digit = Character.digit(byteSource.charAt(index), 16);
 
-        otn.addChild(new OperationTreeNode(ORDER_NUMBER_TO_REGISTER.get(register)));
-        otn.addChild(new OperationTreeNode(AsmX86ParserUtils.encodeNumberToString(val, AsmX86ParserUtils.Radix.HEX)));
+        if (digit < 0) {
+            throw new RuntimeException(String.format(EXCEPTION_MSG_NOT_A_HEX_DIGIT, byteSource.charAt(index)));
+        }
 
-        return otn;
+        return digit;
     }
 
-    private OperationTreeNode disassembleJmp(String b1Str, String b2Str, String b3Str, String b4Str) {
-        long val = (Long.valueOf(b4Str + b3Str + b2Str + b1Str, 16) + 4) & 0xffffffffL;
-        OperationTreeNode otn = new OperationTreeNode("jmp");
-        otn.addChild(new OperationTreeNode(AsmX86ParserUtils.encodeNumberToString(val, AsmX86ParserUtils.Radix.HEX)));
-        return otn;
+    private static Register getRegister(Register register) {
+        if (register == null) {
+            throw new RuntimeException(EXCEPTION_MSG_UNSUPPORTED_INSTRUCTION);
+        }
+
+        return register;
     }
 }
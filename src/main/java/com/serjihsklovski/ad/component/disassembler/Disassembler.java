@@ -1,10 +1,44 @@
 package com.serjihsklovski.ad.component.disassembler;
 
-import com.serjihsklovski.ad.component.OperationTreeNode;
+import com.serjihsklovski.ad.component.Instruction;
 
+import java.nio.ByteBuffer;
 import java.util.List;
+import java.util.function.Consumer;
 
 public interface Disassembler {
 
-    List<OperationTreeNode> disassemble(String byteSource);
+    List<Instruction> disassemble(String byteSource);
+
+    /**
+     * Decodes every complete instruction at the beginning of {@code byteSource}.
+     *
+     * @return the number of characters consumed; an incomplete trailing instruction is left undecoded
+     */
+    int disassemble(CharSequence byteSource, Consumer<Instruction> consumer);
+
+    /**
+     * Decodes every complete instruction between the buffer's position and limit and advances the position
+     * past them; an incomplete trailing instruction is left at the position.
+     */
+    void disassemble(ByteBuffer bytes, Consumer<Instruction> consumer);
+
+    /**
+     * Decodes the single instruction starting at {@code index}.
+     *
+     * @return the length of the instruction, or 0 if it does not fit before the buffer's limit
+     */
+    int disassembleInstruction(ByteBuffer bytes, int index, Consumer<Instruction> consumer);
+
+    /**
+     * Tells the length of the instruction starting at {@code index} from its opcode alone, without decoding it.
+     *
+     * @return the length of the instruction, or 0 if it does not fit before the buffer's limit
+     */
+    int getInstructionLength(ByteBuffer bytes, int index);
+
+    /**
+     * @return the bytes of the pairs of hex digits; an odd trailing digit is left out
+     */
+    byte[] getBytes(CharSequence byteSource);
 }
@@ -0,0 +1,118 @@
+package com.serjihsklovski.ad.component.encoding;
+
+import com.serjihsklovski.ad.component.Mnemonic;
+import com.serjihsklovski.ad.component.Register;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Lookup tables built once from {@link InstructionForm}: the candidate forms of every mnemonic for the
+ * assembler, and forms by opcode and registers by ModR/M byte for the disassembler.
+ */
+public final class EncodingTables {
+
+    private static final InstructionForm[][] MNEMONIC_FORMS = new InstructionForm[Mnemonic.values().length][];
+
+    private static final InstructionForm[] PRIMARY_FORMS = new InstructionForm[256];
+    private static final InstructionForm[] PREFIXED_FORMS = new InstructionForm[256];
+
+    private static final Register[] MODRM_REG_REGISTER = new Register[256];
+    private static final Register[] MODRM_RM_REGISTER = new Register[256];
+    private static final int[] MODRM_OPCODE_EXTENSION = new int[256];
+
+    private static final int MAX_LENGTH;
+
+    static {
+        int maxLength = 0;
+
+        for (InstructionForm form : InstructionForm.values()) {
+            maxLength = Math.max(maxLength, form.getLength());
+        }
+
+        MAX_LENGTH = maxLength;
+
+        for (Mnemonic mnemonic : Mnemonic.values()) {
+            List<InstructionForm> forms = new ArrayList<>();
+
+            for (InstructionForm form : InstructionForm.values()) {
+                if (form.getMnemonic() == mnemonic) {
+                    forms.add(form);
+                }
+            }
+
+            MNEMONIC_FORMS[mnemonic.ordinal()] = forms.toArray(new InstructionForm[0]);
+        }
+
+        for (InstructionForm form : InstructionForm.values()) {
+            InstructionForm[] forms = form.hasOperandSizePrefix() ? PREFIXED_FORMS : PRIMARY_FORMS;
+            int registers = (form.getOperand(0) == OperandEncoding.OPCODE_REGISTER) ? Register.count() : 1;
+
+            for (int register = 0; register < registers; register++) {
+                forms[form.getOpcode() + register] = form;
+            }
+        }
+
+        for (int modRM = 0xc0; modRM <= 0xff; modRM++) {
+            int reg = (modRM >> 3) & 0x7;
+            int rm = modRM & 0x7;
+
+            MODRM_REG_REGISTER[modRM] = (reg < Register.count()) ? Register.forOrdinal(reg) : null;
+            MODRM_RM_REGISTER[modRM] = (rm < Register.count()) ? Register.forOrdinal(rm) : null;
+            MODRM_OPCODE_EXTENSION[modRM] = reg;
+        }
+    }
+
+    private EncodingTables() {
+    }
+
+    /**
+     * @return the forms of the mnemonic, most preferred first
+     */
+    public static InstructionForm[] getForms(Mnemonic mnemonic) {
+        return MNEMONIC_FORMS[mnemonic.ordinal()];
+    }
+
+    /**
+     * @return the length of the longest encoding
+     */
+    public static int getMaxLength() {
+        return MAX_LENGTH;
+    }
+
+    /**
+     * @return the form of an instruction starting with the opcode, or null if there is none
+     */
+    public static InstructionForm getPrimaryForm(int opcode) {
+        return PRIMARY_FORMS[opcode];
+    }
+
+    /**
+     * @return the form of an instruction with the opcode after the operand-size prefix, or null if there is none
+     */
+    public static InstructionForm getPrefixedForm(int opcode) {
+        return PREFIXED_FORMS[opcode];
+    }
+
+    /**
+     * @return the register directly addressed by the `reg` field of the ModR/M byte, or null
+     */
+    public static Register getModRMRegRegister(int modRM) {
+        return MODRM_REG_REGISTER[modRM];
+    }
+
+    /**
+     * @return the register directly addressed by the `r/m` field of the ModR/M byte, or null
+     */
+    public static Register getModRMRmRegister(int modRM) {
+        return MODRM_RM_REGISTER[modRM];
+    }
+
+    public static int getModRMOpcodeExtension(int modRM) {
+        return MODRM_OPCODE_EXTENSION[modRM];
+    }
+
+    public static int getModRM(int reg, int rm) {
+        return 0xc0 | (reg << 3) | rm;
+    }
+}
@@ -0,0 +1,87 @@
+package com.serjihsklovski.ad.component.encoding;
+
+/**
+ * How the immediate operand of an {@link InstructionForm} is stored after its opcode and ModR/M byte.
+ * The operand of a relative jump is its target's distance from the end of the opcode, whatever its form.
+ */
+public enum ImmediateEncoding {
+    NONE(0),
+    IMM8(1),
+    IMM8_SIGN_EXTENDED(1),
+    IMM16(2),
+    REL8(1),
+    REL32(4);
+
+    private final int size;
+
+    ImmediateEncoding(int size) {
+        this.size = size;
+    }
+
+    public int getSize() {
+        return size;
+    }
+
+    public boolean isRelative() {
+        return this == REL8 || this == REL32;
+    }
+
+    /**
+     * @return whether the operand value can be stored in this encoding without changing its meaning
+     */
+    public boolean fits(long value) {
+        if (this == IMM8_SIGN_EXTENDED) {
+            long word = value & 0xffff;
+            return word < 0x80 || word >= 0xff80;
+        }
+
+        if (this == REL8) {
+            int displacement = (int) (value - 1);
+            return displacement >= Byte.MIN_VALUE && displacement <= Byte.MAX_VALUE;
+        }
+
+        return true;
+    }
+
+    /**
+     * @return the little-endian bits to store for the operand value
+     */
+    public long encode(long value) {
+        switch (this) {
+            case IMM8:
+            case IMM8_SIGN_EXTENDED:
+                return value & 0xff;
+
+            case IMM16:
+                return value & 0xffff;
+
+            case REL8:
+                return (value - 1) & 0xff;
+
+            case REL32:
+                return (value - 4) & 0xffffffffL;
+
+            default:
+                return 0;
+        }
+    }
+
+    /**
+     * @return the operand value of the stored bits
+     */
+    public long decode(long bits) {
+        switch (this) {
+            case IMM8_SIGN_EXTENDED:
+                return (bits >= 0x80) ? (bits | 0xff00) : bits;
+
+            case REL8:
+                return ((byte) bits + 1) & 0xffffffffL;
+
+            case REL32:
+                return (bits + 4) & 0xffffffffL;
+
+            default:
+                return bits;
+        }
+    }
+}
@@ -0,0 +1,130 @@
+package com.serjihsklovski.ad.component.encoding;
+
+import com.serjihsklovski.ad.component.Instruction;
+import com.serjihsklovski.ad.component.Mnemonic;
+import com.serjihsklovski.ad.component.Register;
+
+import static com.serjihsklovski.ad.component.encoding.OperandEncoding.*;
+
+/**
+ * Every supported encoding of every instruction. Forms of the same mnemonic are listed from the most to
+ * the least preferred, so the assembler picks the first one that can hold the operands. A jump to a numeric
+ * target always takes its near form; the short one is picked only for jumps to labels, once they are linked.
+ */
+public enum InstructionForm {
+    MOV_REG_REG(Mnemonic.MOV, true, 0x89, -1, MODRM_RM, MODRM_REG, ImmediateEncoding.NONE),
+    MOV_REG_IMM16(Mnemonic.MOV, true, 0xb8, -1, OPCODE_REGISTER, IMMEDIATE, ImmediateEncoding.IMM16),
+    ADD_REG_REG(Mnemonic.ADD, true, 0x01, -1, MODRM_RM, MODRM_REG, ImmediateEncoding.NONE),
+    ADD_REG_IMM8(Mnemonic.ADD, true, 0x83, 0, MODRM_RM, IMMEDIATE, ImmediateEncoding.IMM8_SIGN_EXTENDED),
+    ADD_AX_IMM16(Mnemonic.ADD, true, 0x05, -1, IMPLICIT_AX, IMMEDIATE, ImmediateEncoding.IMM16),
+    ADD_REG_IMM16(Mnemonic.ADD, true, 0x81, 0, MODRM_RM, IMMEDIATE, ImmediateEncoding.IMM16),
+    NOT_REG(Mnemonic.NOT, true, 0xf7, 2, MODRM_RM, NONE, ImmediateEncoding.NONE),
+    SHR_REG_1(Mnemonic.SHR, true, 0xd1, 5, MODRM_RM, IMPLICIT_ONE, ImmediateEncoding.NONE),
+    SHR_REG_IMM8(Mnemonic.SHR, true, 0xc1, 5, MODRM_RM, IMMEDIATE, ImmediateEncoding.IMM8),
+    JMP_REL32(Mnemonic.JMP, false, 0xe9, -1, IMMEDIATE, NONE, ImmediateEncoding.REL32),
+    JMP_REL8(Mnemonic.JMP, false, 0xeb, -1, IMMEDIATE, NONE, ImmediateEncoding.REL8);
+
+    public static final int OPERAND_SIZE_PREFIX = 0x66;
+
+    private final Mnemonic mnemonic;
+    private final boolean operandSizePrefix;
+    private final int opcode;
+    private final int opcodeExtension;
+    private final OperandEncoding firstOperand;
+    private final OperandEncoding secondOperand;
+    private final ImmediateEncoding immediate;
+    private final int length;
+
+    InstructionForm(
+            Mnemonic mnemonic,
+            boolean operandSizePrefix,
+            int opcode,
+            int opcodeExtension,
+            OperandEncoding firstOperand,
+            OperandEncoding secondOperand,
+            ImmediateEncoding immediate
+    ) {
+        this.mnemonic = mnemonic;
+        this.operandSizePrefix = operandSizePrefix;
+        this.opcode = opcode;
+        this.opcodeExtension = opcodeExtension;
+        this.firstOperand = firstOperand;
+        this.secondOperand = secondOperand;
+        this.immediate = immediate;
+        this.length = (operandSizePrefix ? 1 : 0) + 1 + (hasModRM() ? 1 : 0) + immediate.getSize();
+    }
+
+    public Mnemonic getMnemonic() {
+        return mnemonic;
+    }
+
+    public boolean hasOperandSizePrefix() {
+        return operandSizePrefix;
+    }
+
+    public int getOpcode() {
+        return opcode;
+    }
+
+    /**
+     * @return the value of the ModR/M `reg` field that selects this form, or -1 if the field holds an operand
+     */
+    public int getOpcodeExtension() {
+        return opcodeExtension;
+    }
+
+    public OperandEncoding getOperand(int index) {
+        return (index == 0) ? firstOperand : secondOperand;
+    }
+
+    public ImmediateEncoding getImmediate() {
+        return immediate;
+    }
+
+    public boolean hasModRM() {
+        return opcodeExtension >= 0 || firstOperand.isModRM() || secondOperand.isModRM();
+    }
+
+    public int getLength() {
+        return length;
+    }
+
+    /**
+     * @return whether this form can encode the instruction's operands; an implicit `1` may be omitted
+     */
+    public boolean matches(Instruction instruction) {
+        if (instruction.getMnemonic() != mnemonic) {
+            return false;
+        }
+
+        for (int i = 0; i < Instruction.MAX_OPERANDS; i++) {
+            OperandEncoding operand = getOperand(i);
+
+            if (i >= instruction.getOperandCount()) {
+                if (operand != NONE && operand != IMPLICIT_ONE) {
+                    return false;
+                }
+
+                continue;
+            }
+
+            if (operand.getKind() != instruction.getOperandKind(i)) {
+                return false;
+            }
+
+            if (operand == IMPLICIT_AX && instruction.getRegister(i) != Register.AX.ordinal()) {
+                return false;
+            }
+
+            if (operand == IMPLICIT_ONE && (instruction.getImmediate(i) & 0xff) != 1) {
+                return false;
+            }
+
+            if (operand == IMMEDIATE && !immediate.fits(instruction.getImmediate(i))) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+}
@@ -0,0 +1,30 @@
+package com.serjihsklovski.ad.component.encoding;
+
+import com.serjihsklovski.ad.component.OperandKind;
+
+/**
+ * Where an operand of an {@link InstructionForm} is stored in its machine code.
+ */
+public enum OperandEncoding {
+    NONE(OperandKind.NONE),
+    OPCODE_REGISTER(OperandKind.REGISTER),
+    MODRM_RM(OperandKind.REGISTER),
+    MODRM_REG(OperandKind.REGISTER),
+    IMPLICIT_AX(OperandKind.REGISTER),
+    IMPLICIT_ONE(OperandKind.IMMEDIATE),
+    IMMEDIATE(OperandKind.IMMEDIATE);
+
+    private final OperandKind kind;
+
+    OperandEncoding(OperandKind kind) {
+        this.kind = kind;
+    }
+
+    public OperandKind getKind() {
+        return kind;
+    }
+
+    public boolean isModRM() {
+        return this == MODRM_RM || this == MODRM_REG;
+    }
+}
@@ -0,0 +1,57 @@
+package com.serjihsklovski.ad.component.lexer;
+
+import java.util.Arrays;
+
+/**
+ * Lexemes of one source as offset/length pairs over it. The arrays only grow, so a single instance
+ * can be reused for every line without allocating.
+ */
+public class LexemeSpans {
+
+    private static final int INITIAL_CAPACITY = 16;
+
+    private CharSequence source;
+    private int[] offsets = new int[INITIAL_CAPACITY];
+    private int[] lengths = new int[INITIAL_CAPACITY];
+    private int size;
+
+    public void reset(CharSequence source) {
+        this.source = source;
+        this.size = 0;
+    }
+
+    public void add(int offset, int length) {
+        if (size == offsets.length) {
+            offsets = Arrays.copyOf(offsets, 2 * size);
+            lengths = Arrays.copyOf(lengths, 2 * size);
+        }
+
+        offsets[size] = offset;
+        lengths[size] = length;
+        size++;
+    }
+
+    public CharSequence getSource() {
+        return source;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int getOffset(int index) {
+        return offsets[index];
+    }
+
+    public int getLength(int index) {
+        return lengths[index];
+    }
+
+    public char getFirstChar(int index) {
+        return source.charAt(offsets[index]);
+    }
+
+    public String getLexeme(int index) {
+        return source.subSequence(offsets[index], offsets[index] + lengths[index]).toString();
+    }
+}
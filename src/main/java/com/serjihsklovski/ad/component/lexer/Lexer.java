@@ -24,6 +24,14 @@ public interface Lexer {
         return true;
     }
 
+    default boolean addWhitespaceLexemes() {
+        return true;
+    }
+
+    default boolean isWhitespace(char c) {
+        return Character.isWhitespace(c);
+    }
+
     default boolean isDelimiter(Character c) {
         return getDelimiters().stream()
                 .anyMatch(character -> character.equals(c));
@@ -49,7 +57,10 @@ public interface Lexer {
         for (char c : src.toCharArray()) {
             if (isDelimiter(c)) {
                 flushIfLexemeNotEmpty.accept(lexeme);
-                lexemes.add(String.valueOf(c));
+
+                if (addWhitespaceLexemes() || !isWhitespace(c)) {
+                    lexemes.add(String.valueOf(c));
+                }
             } else {
                 lexeme.append(c);
             }
@@ -63,4 +74,33 @@ public interface Lexer {
 
         return lexemes;
     }
+
+    /**
+     * Splits {@code src} the same way as {@link #getLexemes(String)}, but records the lexemes as spans
+     * over the source instead of strings. The end lexeme is implied by the end of the spans.
+     */
+    default void getLexemeSpans(CharSequence src, LexemeSpans spans) {
+        spans.reset(src);
+        int lexemeStart = 0;
+
+        for (int i = 0; i < src.length(); i++) {
+            char c = src.charAt(i);
+
+            if (isDelimiter(c)) {
+                if (lexemeStart < i) {
+                    spans.add(lexemeStart, i - lexemeStart);
+                }
+
+                if (addWhitespaceLexemes() || !isWhitespace(c)) {
+                    spans.add(i, 1);
+                }
+
+                lexemeStart = i + 1;
+            }
+        }
+
+        if (lexemeStart < src.length()) {
+            spans.add(lexemeStart, src.length() - lexemeStart);
+        }
+    }
 }
@@ -0,0 +1,112 @@
+package com.serjihsklovski.ad.component.lexer;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * A lexer that classifies ASCII characters through a table built once from {@link #getDelimiters()}
+ * and skips whitespace lexemes. Unlike the default lexer, it keeps `_` within a lexeme, as a label may hold it.
+ */
+public class TableLexerImpl implements Lexer {
+
+    private static final byte LEXEME_CHAR = 0;
+    private static final byte DELIMITER_CHAR = 1;
+    private static final byte WHITESPACE_CHAR = 2;
+
+    private static final String LABEL_CHARACTERS = "_";
+
+    private final byte[] characterClasses = new byte[128];
+
+    public TableLexerImpl() {
+        for (Character delimiter : getDelimiters()) {
+            if (delimiter < characterClasses.length) {
+                characterClasses[delimiter] = Character.isWhitespace(delimiter) ? WHITESPACE_CHAR : DELIMITER_CHAR;
+            }
+        }
+    }
+
+    @Override
+    public List<Character> getDelimiters() {
+        return Lexer.super.getDelimiters().stream()
+                .filter(c -> LABEL_CHARACTERS.indexOf(c) < 0)
+                .collect(Collectors.toList());
+    }
+
+    private byte getCharacterClass(char c) {
+        return (c < characterClasses.length) ? characterClasses[c] : LEXEME_CHAR;
+    }
+
+    @Override
+    public boolean addWhitespaceLexemes() {
+        return false;
+    }
+
+    @Override
+    public boolean isWhitespace(char c) {
+        return getCharacterClass(c) == WHITESPACE_CHAR;
+    }
+
+    @Override
+    public boolean isDelimiter(Character c) {
+        return getCharacterClass(c) != LEXEME_CHAR;
+    }
+
+    @Override
+    public List<String> getLexemes(String src) {
+        List<String> lexemes = new ArrayList<>();
+        int lexemeStart = 0;
+
+        for (int i = 0; i < src.length(); i++) {
+            byte characterClass = getCharacterClass(src.charAt(i));
+
+            if (characterClass != LEXEME_CHAR) {
+                if (lexemeStart < i) {
+                    lexemes.add(src.substring(lexemeStart, i));
+                }
+
+                if (characterClass == DELIMITER_CHAR) {
+                    lexemes.add(src.substring(i, i + 1));
+                }
+
+                lexemeStart = i + 1;
+            }
+        }
+
+        if (lexemeStart < src.length()) {
+            lexemes.add(src.substring(lexemeStart));
+        }
+
+        if (addEndLexeme()) {
+            lexemes.add(getEndLexeme());
+        }
+
+        return lexemes;
+    }
+
+    @Override
+    public void getLexemeSpans(CharSequence src, LexemeSpans spans) {
+        spans.reset(src);
+        int lexemeStart = 0;
+
+        for (int i = 0; i < src.length(); i++) {
+            byte characterClass = getCharacterClass(src.charAt(i));
+
+            if (characterClass != LEXEME_CHAR) {
+                if (lexemeStart < i) {
+                    spans.add(lexemeStart, i - lexemeStart);
+                }
+
+                if (characterClass == DELIMITER_CHAR) {
+                    spans.add(i, 1);
+                }
+
+                lexemeStart = i + 1;
+            }
+        }
+
+        if (lexemeStart < src.length()) {
+            spans.add(lexemeStart, src.length() - lexemeStart);
+        }
+    }
+}
@@ -0,0 +1,21 @@
+package com.serjihsklovski.ad.component.optimizer;
+
+import com.serjihsklovski.ad.component.Instruction;
+
+import java.util.function.Consumer;
+
+public interface Optimizer {
+
+    /**
+     * Passes the optimized instructions to the consumer in order, in a single pass over the given ones,
+     * which are left unchanged.
+     */
+    void optimize(Iterable<Instruction> instructions, Consumer<Instruction> consumer);
+
+    /**
+     * @return whether the instruction is passed through unchanged and nothing is folded across it, so that
+     * optimizing the instructions up to it and the ones after it separately gives the same output as optimizing
+     * them together
+     */
+    boolean isBoundary(Instruction instruction);
+}
@@ -0,0 +1,131 @@
+package com.serjihsklovski.ad.component.optimizer;
+
+import com.serjihsklovski.ad.component.Instruction;
+import com.serjihsklovski.ad.component.Mnemonic;
+import com.serjihsklovski.ad.component.OperandKind;
+import com.serjihsklovski.ad.component.Register;
+
+import java.util.function.Consumer;
+
+/**
+ * Folds each instruction into the last one kept, holding that one back until the next is kept: `add r, a`
+ * followed by `add r, b` and `shr r, a` followed by `shr r, b` become one instruction, and the ones without
+ * effect - `mov r, r`, `add r, 0` and `shr r, 0` - are dropped, so the instructions around them still fold. An
+ * instruction is never folded into one before its label, as a jump may enter there. The pass is linear.
+ */
+public class PeepholeOptimizerImpl implements Optimizer {
+
+    private static final long WORD_MASK = 0xffff;
+
+    /**
+     * The bits of a shift count the processor uses; any count past the width of a word clears it.
+     */
+    private static final int SHIFT_COUNT_MASK = 0x1f;
+
+    @Override
+    public void optimize(Iterable<Instruction> instructions, Consumer<Instruction> consumer) {
+        Instruction last = null;
+
+        for (Instruction instruction : instructions) {
+            Instruction folded = (last == null) ? null : fold(last, instruction);
+
+            if (folded != null) {
+                last = null;
+                instruction = folded;
+            }
+
+            if (hasNoEffect(instruction)) {
+                if (instruction.getLabel() == null) {
+                    continue;
+                }
+
+                Instruction label = new Instruction();
+                label.setLabel(instruction.getLabel());
+                instruction = label;
+            }
+
+            if (last != null) {
+                consumer.accept(last);
+            }
+
+            last = instruction;
+        }
+
+        if (last != null) {
+            consumer.accept(last);
+        }
+    }
+
+    /**
+     * An instruction that neither folds nor is dropped is held back only until the next one is kept, and nothing
+     * folds into it, so no later instruction reaches past it.
+     */
+    @Override
+    public boolean isBoundary(Instruction instruction) {
+        return !isRegisterAndImmediate(instruction) && !hasNoEffect(instruction);
+    }
+
+    /**
+     * @return the single instruction doing what {@code first} followed by {@code second} does, or null
+     */
+    private static Instruction fold(Instruction first, Instruction second) {
+        if (second.getLabel() != null
+                || first.getMnemonic() != second.getMnemonic()
+                || !isRegisterAndImmediate(first)
+                || !isRegisterAndImmediate(second)
+                || first.getRegister(0) != second.getRegister(0)) {
+            return null;
+        }
+
+        long immediate;
+
+        switch (first.getMnemonic()) {
+            case ADD:
+                immediate = (first.getImmediate(1) + second.getImmediate(1)) & WORD_MASK;
+                break;
+
+            case SHR:
+                immediate = Math.min(getShiftCount(first) + getShiftCount(second), SHIFT_COUNT_MASK);
+                break;
+
+            default:
+                return null;
+        }
+
+        Instruction folded = new Instruction(first.getMnemonic())
+                .addRegister(Register.forOrdinal(first.getRegister(0)))
+                .addImmediate(immediate);
+
+        folded.setLabel(first.getLabel());
+        return folded;
+    }
+
+    private static boolean hasNoEffect(Instruction instruction) {
+        if (instruction.getMnemonic() == Mnemonic.MOV) {
+            return instruction.hasOperands(OperandKind.REGISTER, OperandKind.REGISTER)
+                    && instruction.getRegister(0) == instruction.getRegister(1);
+        }
+
+        if (!instruction.hasOperands(OperandKind.REGISTER, OperandKind.IMMEDIATE)) {
+            return false;
+        }
+
+        if (instruction.getMnemonic() == Mnemonic.ADD) {
+            return (instruction.getImmediate(1) & WORD_MASK) == 0;
+        }
+
+        return instruction.getMnemonic() == Mnemonic.SHR && getShiftCount(instruction) == 0;
+    }
+
+    /**
+     * @return whether the instruction is `add r, imm` or `shr r, imm`, the count of `shr r` being an implicit 1
+     */
+    private static boolean isRegisterAndImmediate(Instruction instruction) {
+        return instruction.hasOperands(OperandKind.REGISTER, OperandKind.IMMEDIATE)
+                || (instruction.getMnemonic() == Mnemonic.SHR && instruction.hasOperands(OperandKind.REGISTER));
+    }
+
+    private static long getShiftCount(Instruction instruction) {
+        return (instruction.getOperandCount() == 1) ? 1 : instruction.getImmediate(1) & SHIFT_COUNT_MASK;
+    }
+}
@@ -1,6 +1,14 @@
 package com.serjihsklovski.ad.component.parser;
 
-import com.serjihsklovski.ad.component.OperationTreeNode;
+import com.serjihsklovski.ad.component.Instruction;
+import com.serjihsklovski.ad.component.Mnemonic;
+import com.serjihsklovski.ad.component.OperandKind;
+import com.serjihsklovski.ad.component.Register;
+
+import com.serjihsklovski.ad.component.encoding.EncodingTables;
+import com.serjihsklovski.ad.component.encoding.InstructionForm;
+import com.serjihsklovski.ad.component.encoding.OperandEncoding;
+import com.serjihsklovski.ad.component.lexer.LexemeSpans;
 
 import java.util.*;
 
@@ -12,152 +20,251 @@ public class AsmX86ParserImpl implements Parser {
         REGISTER_ONLY,
         REGISTER_AND_UNNECESSARY_NUMBER,
         NUMBER_ONLY,
+        TARGET_ONLY,
         REGISTER_OR_NUMBER,
         UNNECESSARY_NUMBER,
         NOTHING,
     }
 
-    private static final Map<String, Expectation> INSTRUCTIONS_TO_EXPECTATIONS = new HashMap<>();
+    /**
+     * The operands each mnemonic expects, derived from the operands of its encodings.
+     */
+    private static final Map<Mnemonic, Expectation> INSTRUCTIONS_TO_EXPECTATIONS = new EnumMap<>(Mnemonic.class);
+
+    private static final String END_LEXEME = "\n";
 
     private static final String EXCEPTION_MSG_UNEXPECTED_TOKEN = "`%s` - an unexpected token! %s";
     private static final String EXCEPTION_MSG_NOT_A_REGISTER = "Not a register.";
     private static final String EXCEPTION_MSG_NOT_A_NUMBER = "Not a number.";
+    private static final String EXCEPTION_MSG_NOT_A_TARGET = "Not a number or a label.";
     private static final String EXCEPTION_MSG_NO_MORE_TOKENS = "More tokens are not expected in this instruction, but `%s` was given.";
-    private static final String EXCEPTION_MSG_UNSUSPECTED_ERROR = "An unsuspected error occurred when parsing.";
+    private static final String EXCEPTION_MSG_UNSUPPORTED_OPERANDS = "`%s` - unsupported operands in the encoding table!";
 
     static {
-        INSTRUCTIONS_TO_EXPECTATIONS.put("mov", Expectation.REGISTER_AND_REGISTER_OR_NUMBER);
-        INSTRUCTIONS_TO_EXPECTATIONS.put("add", Expectation.REGISTER_AND_REGISTER_OR_NUMBER);
-        INSTRUCTIONS_TO_EXPECTATIONS.put("not", Expectation.REGISTER_ONLY);
-        INSTRUCTIONS_TO_EXPECTATIONS.put("shr", Expectation.REGISTER_AND_UNNECESSARY_NUMBER);
-        INSTRUCTIONS_TO_EXPECTATIONS.put("jmp", Expectation.NUMBER_ONLY);
+        for (Mnemonic mnemonic : Mnemonic.values()) {
+            INSTRUCTIONS_TO_EXPECTATIONS.put(mnemonic, getExpectation(mnemonic));
+        }
     }
 
-    private boolean isSupportedInstruction(String lexeme) {
-        return INSTRUCTIONS_TO_EXPECTATIONS.keySet().stream()
-                .anyMatch(i -> i.equals(lexeme));
+    private static Expectation getExpectation(Mnemonic mnemonic) {
+        Set<OperandKind> firstOperands = EnumSet.noneOf(OperandKind.class);
+        Set<OperandKind> secondOperands = EnumSet.noneOf(OperandKind.class);
+        boolean relative = true;
+
+        for (InstructionForm form : EncodingTables.getForms(mnemonic)) {
+            firstOperands.add(form.getOperand(0).getKind());
+            secondOperands.add(form.getOperand(1).getKind());
+            relative &= form.getImmediate().isRelative();
+
+            if (form.getOperand(1) == OperandEncoding.IMPLICIT_ONE) {
+                secondOperands.add(OperandKind.NONE);
+            }
+        }
+
+        if (firstOperands.equals(EnumSet.of(OperandKind.IMMEDIATE))
+                && secondOperands.equals(EnumSet.of(OperandKind.NONE))) {
+            return relative ? Expectation.TARGET_ONLY : Expectation.NUMBER_ONLY;
+        } else if (!firstOperands.equals(EnumSet.of(OperandKind.REGISTER))) {
+            throw new IllegalStateException(String.format(EXCEPTION_MSG_UNSUPPORTED_OPERANDS, mnemonic.getName()));
+        } else if (secondOperands.equals(EnumSet.of(OperandKind.NONE))) {
+            return Expectation.REGISTER_ONLY;
+        } else if (secondOperands.equals(EnumSet.of(OperandKind.NONE, OperandKind.IMMEDIATE))) {
+            return Expectation.REGISTER_AND_UNNECESSARY_NUMBER;
+        } else if (secondOperands.equals(EnumSet.of(OperandKind.REGISTER, OperandKind.IMMEDIATE))) {
+            return Expectation.REGISTER_AND_REGISTER_OR_NUMBER;
+        }
+
+        throw new IllegalStateException(String.format(EXCEPTION_MSG_UNSUPPORTED_OPERANDS, mnemonic.getName()));
     }
 
+    /**
+     * Parses the lexemes through {@link #parse(LexemeSpans)}, as spans over their concatenation.
+     */
     @Override
-    public OperationTreeNode parse(List<String> lexemes) {
-        OperationTreeNode otn = new OperationTreeNode();
-        Expectation expectation = Expectation.INSTRUCTION;
+    public Instruction parse(List<String> lexemes) {
+        StringBuilder source = new StringBuilder();
+        LexemeSpans spans = new LexemeSpans();
+
+        spans.reset(source);
 
         for (String lexeme : lexemes) {
-            if (lexeme.equals(" ") || lexeme.equals("\t")) {
+            spans.add(source.length(), lexeme.length());
+            source.append(lexeme);
+        }
+
+        return parse(spans);
+    }
+
+    /**
+     * Parses the lexemes without creating a string for any of them but a label; the end of the spans stands for
+     * the end lexeme.
+     */
+    @Override
+    public Instruction parse(LexemeSpans spans) {
+        Instruction instruction = new Instruction();
+        NumericLiteral literal = new NumericLiteral();
+        Expectation expectation = Expectation.INSTRUCTION;
+        int labelStart = -1;
+        int labelEnd = -1;
+
+        for (int i = 0; i <= spans.size(); i++) {
+            boolean last = i == spans.size();
+            CharSequence text = last ? END_LEXEME : spans.getSource();
+            int start = last ? 0 : spans.getOffset(i);
+            int end = last ? END_LEXEME.length() : start + spans.getLength(i);
+
+            if (isChar(text, start, end, ' ') || isChar(text, start, end, '\t')) {
                 continue;
             }
 
+            Register register;
+
             switch (expectation) {
                 case INSTRUCTION:
-                    if (isSupportedInstruction(lexeme.toLowerCase())) {
-                        String l = lexeme.toLowerCase();
-                        otn.setValue(l);
-                        expectation = INSTRUCTIONS_TO_EXPECTATIONS.get(l);
+                    Mnemonic mnemonic = Mnemonic.forName(text, start, end);
+
+                    if (mnemonic != null) {
+                        instruction.setMnemonic(mnemonic);
+                        expectation = INSTRUCTIONS_TO_EXPECTATIONS.get(mnemonic);
+                    } else if (isChar(text, start, end, ':') && labelStart >= 0 && instruction.getLabel() == null) {
+                        instruction.setLabel(text.subSequence(labelStart, labelEnd).toString());
                     }
 
+                    labelStart = AsmX86ParserUtils.isLabel(text, start, end) ? start : -1;
+                    labelEnd = end;
                     continue;
 
                 case REGISTER_AND_REGISTER_OR_NUMBER:
-                    if (AsmX86ParserUtils.isRegister(lexeme.toLowerCase())) {
-                        otn.addChild(new OperationTreeNode(lexeme.toLowerCase()));
+                    if ((register = Register.forName(text, start, end)) != null) {
+                        instruction.addRegister(register);
                         expectation = Expectation.REGISTER_OR_NUMBER;
                     } else {
-                        throw new RuntimeException(
-                                String.format(EXCEPTION_MSG_UNEXPECTED_TOKEN, lexeme, EXCEPTION_MSG_NOT_A_REGISTER));
+                        throw new RuntimeException(String.format(EXCEPTION_MSG_UNEXPECTED_TOKEN,
+                                text.subSequence(start, end), EXCEPTION_MSG_NOT_A_REGISTER));
                     }
 
                     continue;
 
                 case REGISTER_ONLY:
-                    if (AsmX86ParserUtils.isRegister(lexeme.toLowerCase())) {
-                        otn.addChild(new OperationTreeNode(lexeme.toLowerCase()));
+                    if ((register = Register.forName(text, start, end)) != null) {
+                        instruction.addRegister(register);
                         expectation = Expectation.NOTHING;
                     } else {
-                        throw new RuntimeException(
-                                String.format(EXCEPTION_MSG_UNEXPECTED_TOKEN, lexeme, EXCEPTION_MSG_NOT_A_REGISTER));
+                        throw new RuntimeException(String.format(EXCEPTION_MSG_UNEXPECTED_TOKEN,
+                                text.subSequence(start, end), EXCEPTION_MSG_NOT_A_REGISTER));
                     }
 
                     continue;
 
                 case REGISTER_AND_UNNECESSARY_NUMBER:
-                    if (AsmX86ParserUtils.isRegister(lexeme.toLowerCase())) {
-                        otn.addChild(new OperationTreeNode(lexeme.toLowerCase()));
+                    if ((register = Register.forName(text, start, end)) != null) {
+                        instruction.addRegister(register);
                         expectation = Expectation.UNNECESSARY_NUMBER;
                     } else {
-                        throw new RuntimeException(
-                                String.format(EXCEPTION_MSG_UNEXPECTED_TOKEN, lexeme, EXCEPTION_MSG_NOT_A_REGISTER));
+                        throw new RuntimeException(String.format(EXCEPTION_MSG_UNEXPECTED_TOKEN,
+                                text.subSequence(start, end), EXCEPTION_MSG_NOT_A_REGISTER));
                     }
 
                     continue;
 
                 case UNNECESSARY_NUMBER:
-                    switch (lexeme) {
-                        case "\n":
-                            expectation = Expectation.NOTHING;
-                            continue;
-
-                        case ",":
-                            expectation = Expectation.NUMBER_ONLY;
-                            continue;
-
-                        default:
-                            throw new RuntimeException(
-                                    String.format(EXCEPTION_MSG_UNEXPECTED_TOKEN, lexeme, EXCEPTION_MSG_NOT_A_NUMBER));
+                    if (isChar(text, start, end, '\n')) {
+                        expectation = Expectation.NOTHING;
+                    } else if (isChar(text, start, end, ',')) {
+                        expectation = Expectation.NUMBER_ONLY;
+                    } else {
+                        throw new RuntimeException(String.format(EXCEPTION_MSG_UNEXPECTED_TOKEN,
+                                text.subSequence(start, end), EXCEPTION_MSG_NOT_A_NUMBER));
                     }
 
+                    continue;
+
                 case NUMBER_ONLY:
-                    if (AsmX86ParserUtils.isValue(lexeme.toLowerCase())) {
-                        otn.addChild(new OperationTreeNode(lexeme.toLowerCase()));
+                    if (AsmX86ParserUtils.scanNumber(text, start, end, literal)) {
+                        instruction.addImmediate(literal.getValue());
                         expectation = Expectation.NOTHING;
                     } else {
-                        throw new RuntimeException(
-                                String.format(EXCEPTION_MSG_UNEXPECTED_TOKEN, lexeme, EXCEPTION_MSG_NOT_A_NUMBER));
+                        throw new RuntimeException(String.format(EXCEPTION_MSG_UNEXPECTED_TOKEN,
+                                text.subSequence(start, end), EXCEPTION_MSG_NOT_A_NUMBER));
+                    }
+
+                    continue;
+
+                case TARGET_ONLY:
+                    if (AsmX86ParserUtils.scanNumber(text, start, end, literal)) {
+                        instruction.addImmediate(literal.getValue());
+                        expectation = Expectation.NOTHING;
+                    } else if (AsmX86ParserUtils.isLabel(text, start, end)) {
+                        instruction.addTarget(text.subSequence(start, end).toString());
+                        expectation = Expectation.NOTHING;
+                    } else {
+                        throw new RuntimeException(String.format(EXCEPTION_MSG_UNEXPECTED_TOKEN,
+                                text.subSequence(start, end), EXCEPTION_MSG_NOT_A_TARGET));
                     }
 
                     continue;
 
                 case REGISTER_OR_NUMBER:
-                    if (lexeme.equals(",")) {
+                    if (isChar(text, start, end, ',')) {
                         continue;
                     }
 
-                    if (
-                            AsmX86ParserUtils.isRegister(lexeme.toLowerCase()) ||
-                            AsmX86ParserUtils.isValue(lexeme.toLowerCase())
-                    ) {
-                        otn.addChild(new OperationTreeNode(lexeme.toLowerCase()));
+                    if ((register = Register.forName(text, start, end)) != null) {
+                        instruction.addRegister(register);
+                        expectation = Expectation.NOTHING;
+                    } else if (AsmX86ParserUtils.scanNumber(text, start, end, literal)) {
+                        instruction.addImmediate(literal.getValue());
                         expectation = Expectation.NOTHING;
                     }
 
                     continue;
 
                 case NOTHING:
-                    if (lexeme.equals("\n")) {
-                        return otn;
+                    if (isChar(text, start, end, '\n')) {
+                        return instruction;
                     }
 
-                    throw new RuntimeException(
-                            String.format(EXCEPTION_MSG_UNEXPECTED_TOKEN, EXCEPTION_MSG_NO_MORE_TOKENS, lexeme));
+                    throw new RuntimeException(String.format(EXCEPTION_MSG_UNEXPECTED_TOKEN,
+                            EXCEPTION_MSG_NO_MORE_TOKENS, text.subSequence(start, end)));
             }
         }
 
-        return otn;
+        return instruction;
+    }
+
+    private static boolean isChar(CharSequence text, int start, int end, char c) {
+        return end - start == 1 && text.charAt(start) == c;
     }
 
     @Override
-    public String parse(OperationTreeNode operation) {
-        String cmd = operation.getValue();
-
-        if (operation.getChildren().size() == 1) {
-            cmd += " " + operation.getChildren().get(0).getValue();
-        } else if (operation.getChildren().size() > 1) {
-            cmd += " " + operation.getChildren().stream()
-                    .map(OperationTreeNode::getValue)
-                    .reduce((v1, v2) -> String.format("%s, %s", v1, v2))
-                    .orElseThrow(() -> new RuntimeException(EXCEPTION_MSG_UNSUSPECTED_ERROR));
+    public String parse(Instruction instruction) {
+        StringBuilder cmd = new StringBuilder();
+
+        if (instruction.getLabel() != null) {
+            cmd.append(instruction.getLabel()).append(':');
+
+            if (instruction.getMnemonic() == null) {
+                return cmd.toString();
+            }
+
+            cmd.append(' ');
+        }
+
+        cmd.append(instruction.getMnemonic().getName());
+
+        for (int i = 0; i < instruction.getOperandCount(); i++) {
+            cmd.append((i == 0) ? " " : ", ");
+
+            if (instruction.getOperandKind(i) == OperandKind.REGISTER) {
+                cmd.append(Register.forOrdinal(instruction.getRegister(i)).getName());
+            } else if (instruction.getOperandKind(i) == OperandKind.LABEL) {
+                cmd.append(instruction.getTarget());
+            } else {
+                cmd.append(AsmX86ParserUtils.encodeNumberToString(
+                        instruction.getImmediate(i), AsmX86ParserUtils.Radix.HEX));
+            }
         }
 
-        return cmd;
+        return cmd.toString();
     }
 }
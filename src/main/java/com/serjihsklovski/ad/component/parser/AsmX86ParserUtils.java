@@ -1,5 +1,8 @@
 package com.serjihsklovski.ad.component.parser;
 
+import com.serjihsklovski.ad.component.Mnemonic;
+import com.serjihsklovski.ad.component.Register;
+
 import java.util.HashSet;
 import java.util.Set;
 
@@ -8,12 +11,12 @@ public class AsmX86ParserUtils {
     public static final Set<String> REGISTERS = new HashSet<>();
 
     private static final String EXCEPTION_MSG_UNSUPPORTED_RADIX = "Unsupported radix!";
+    private static final String EXCEPTION_MSG_NOT_A_NUMBER = "For input string: \"%s\"";
 
     static {
-        REGISTERS.add("ax");
-        REGISTERS.add("cx");
-        REGISTERS.add("dx");
-        REGISTERS.add("bx");
+        for (Register register : Register.values()) {
+            REGISTERS.add(register.getName());
+        }
     }
 
     public enum Radix {
@@ -24,28 +27,114 @@ public class AsmX86ParserUtils {
     }
 
     public static boolean isRegister(String lexeme) {
-        return REGISTERS.stream()
-                .anyMatch(i -> i.equals(lexeme));
+        return Register.forName(lexeme) != null;
+    }
+
+    /**
+     * @return whether the lexeme can name a label: a letter or `_` followed by letters, digits or `_`, other
+     * than the name of a register or a mnemonic
+     */
+    public static boolean isLabel(String lexeme) {
+        return isLabel(lexeme, 0, lexeme.length());
+    }
+
+    /**
+     * @return whether {@code text[start, end)} can name a label, as {@link #isLabel(String)}
+     */
+    public static boolean isLabel(CharSequence text, int start, int end) {
+        if (start == end || !isLabelStart(text.charAt(start))) {
+            return false;
+        }
+
+        for (int i = start + 1; i < end; i++) {
+            if (!isLabelStart(text.charAt(i)) && !Character.isDigit(text.charAt(i))) {
+                return false;
+            }
+        }
+
+        return Register.forName(text, start, end) == null && Mnemonic.forName(text, start, end) == null;
+    }
+
+    private static boolean isLabelStart(char c) {
+        return Character.isLetter(c) || c == '_';
     }
 
     public static long parseNumberFromString(String intValArg) {
-        try {
-            switch (intValArg.toLowerCase().substring(0, 2)) {
-                case "0x":
-                    return Long.valueOf(intValArg.substring(2), 16);
+        NumericLiteral literal = new NumericLiteral();
 
-                case "0o":
-                    return Long.valueOf(intValArg.substring(2), 8);
+        if (!scanNumber(intValArg, 0, intValArg.length(), literal)) {
+            throw new NumberFormatException(String.format(EXCEPTION_MSG_NOT_A_NUMBER, intValArg));
+        }
+
+        return literal.getValue();
+    }
 
-                case "0b":
-                    return Long.valueOf(intValArg.substring(2), 2);
+    /**
+     * Scans {@code text[start, end)} as a `0x`, `0o`, `0b` prefixed or a decimal literal, with an optional
+     * sign, in a single pass and without throwing.
+     *
+     * @return whether the text is a literal fitting into a long; only then {@code literal} is updated
+     */
+    public static boolean scanNumber(CharSequence text, int start, int end, NumericLiteral literal) {
+        int radix = 10;
+
+        if (end - start >= 2 && text.charAt(start) == '0') {
+            switch (text.charAt(start + 1)) {
+                case 'x':
+                case 'X':
+                    radix = 16;
+                    break;
+
+                case 'o':
+                case 'O':
+                    radix = 8;
+                    break;
+
+                case 'b':
+                case 'B':
+                    radix = 2;
+                    break;
 
                 default:
-                    return Long.valueOf(intValArg);
+                    break;
             }
-        } catch (IndexOutOfBoundsException ioobe) {
-            return Long.valueOf(intValArg);
         }
+
+        int index = (radix == 10) ? start : start + 2;
+        boolean negative = false;
+
+        if (index < end && (text.charAt(index) == '-' || text.charAt(index) == '+')) {
+            negative = text.charAt(index) == '-';
+            index++;
+        }
+
+        if (index == end) {
+            return false;
+        }
+
+        // accumulated negatively, as the magnitude of Long.MIN_VALUE does not fit into a long
+        long limit = negative ? Long.MIN_VALUE : -Long.MAX_VALUE;
+        long multiplicationLimit = limit / radix;
+        long result = 0;
+
+        for (; index < end; index++) {
+            int digit = Character.digit(text.charAt(index), radix);
+
+            if (digit < 0 || result < multiplicationLimit) {
+                return false;
+            }
+
+            result *= radix;
+
+            if (result < limit + digit) {
+                return false;
+            }
+
+            result -= digit;
+        }
+
+        literal.set(negative ? result : -result);
+        return true;
     }
 
     public static String encodeNumberToString(long number, Radix radix) {
@@ -67,11 +156,6 @@ public class AsmX86ParserUtils {
     }
 
     public static boolean isValue(String lexeme) {
-        try {
-            parseNumberFromString(lexeme);
-            return true;
-        } catch (NumberFormatException nfe) {
-            return false;
-        }
+        return scanNumber(lexeme, 0, lexeme.length(), new NumericLiteral());
     }
 }
@@ -0,0 +1,37 @@
+package com.serjihsklovski.ad.component.parser;
+
+/**
+ * The result of {@link AsmX86ParserUtils#scanNumber(CharSequence, int, int, NumericLiteral)}, reused
+ * between scans.
+ */
+public class NumericLiteral {
+
+    private long value;
+    private int width;
+
+    public long getValue() {
+        return value;
+    }
+
+    /**
+     * @return the bits of the smallest immediate (8, 16, 32 or 64) holding the value either as an unsigned
+     * number or as a sign-extended one
+     */
+    public int getWidth() {
+        return width;
+    }
+
+    void set(long value) {
+        this.value = value;
+
+        if (value >= Byte.MIN_VALUE && value <= 0xff) {
+            width = 8;
+        } else if (value >= Short.MIN_VALUE && value <= 0xffff) {
+            width = 16;
+        } else if (value >= Integer.MIN_VALUE && value <= 0xffffffffL) {
+            width = 32;
+        } else {
+            width = 64;
+        }
+    }
+}
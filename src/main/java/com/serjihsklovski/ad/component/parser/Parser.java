@@ -1,12 +1,19 @@
 package com.serjihsklovski.ad.component.parser;
 
-import com.serjihsklovski.ad.component.OperationTreeNode;
+import com.serjihsklovski.ad.component.Instruction;
+import com.serjihsklovski.ad.component.lexer.LexemeSpans;
 
 import java.util.List;
 
 public interface Parser {
 
-    OperationTreeNode parse(List<String> lexemes);
+    Instruction parse(List<String> lexemes);
 
-    String parse(OperationTreeNode operation);
+    /**
+     * Parses the lexemes of a line as {@link #parse(List)} does, given as spans over the line followed by the
+     * implied end lexeme.
+     */
+    Instruction parse(LexemeSpans spans);
+
+    String parse(Instruction instruction);
 }
@@ -0,0 +1,110 @@
+package com.serjihsklovski.ad.api.command;
+
+import com.serjihsklovski.ad.Application;
+import com.serjihsklovski.ad.component.Instruction;
+import com.serjihsklovski.ad.component.assembler.AsmX86AssemblerImpl;
+import com.serjihsklovski.ad.component.assembler.Assembler;
+import com.serjihsklovski.ad.component.lexer.TableLexerImpl;
+import com.serjihsklovski.ad.component.optimizer.PeepholeOptimizerImpl;
+import com.serjihsklovski.ad.component.parser.AsmX86ParserImpl;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+
+public class AssembleCommandTest {
+
+    private static final int LINES = 40_000;
+    private static final String[] REGISTERS = {"ax", "bx", "cx", "dx"};
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private Path source;
+
+    /**
+     * A source dense with foldable runs on one register, long enough to span many chunks of every kind.
+     */
+    @Before
+    public void writeSource() throws IOException {
+        Random random = new Random(7);
+        List<String> lines = new ArrayList<>(LINES);
+
+        for (int i = 0; i < LINES; i++) {
+            double kind = random.nextDouble();
+
+            if (kind < 0.45) {
+                lines.add("add ax, " + random.nextInt(300));
+            } else if (kind < 0.7) {
+                lines.add("shr ax, " + random.nextInt(4));
+            } else if (kind < 0.8) {
+                lines.add("mov ax, ax");
+            } else if (kind < 0.9) {
+                lines.add("add " + REGISTERS[random.nextInt(REGISTERS.length)] + ", " + random.nextInt(10));
+            } else {
+                lines.add("mov " + REGISTERS[random.nextInt(REGISTERS.length)]
+                        + ", " + REGISTERS[random.nextInt(REGISTERS.length)]);
+            }
+        }
+
+        source = folder.getRoot().toPath().resolve("source.asm");
+        Files.write(source, lines, StandardCharsets.UTF_8);
+    }
+
+    @Test
+    public void optimizeWithCacheEqualsOptimize() throws IOException {
+        String optimized = assemble("-optimize");
+        Path cache = folder.getRoot().toPath().resolve("source.cache");
+
+        assertEquals(optimizeWholeSource(), optimized);
+        assertEquals(optimized, assemble("-optimize", "-cache", cache.toString()));
+        assertEquals(optimized, assemble("-optimize", "-cache", cache.toString()));
+        assertEquals(optimized, assemble("-optimize", "-threads", "3"));
+    }
+
+    private String assemble(String... options) throws IOException {
+        Path output = folder.newFile().toPath();
+        List<String> args = new ArrayList<>();
+
+        args.add("-assemble");
+        args.add("-input");
+        args.add(source.toString());
+        args.add("-output");
+        args.add(output.toString());
+
+        for (String option : options) {
+            args.add(option);
+        }
+
+        assertEquals(Application.EXIT_SUCCESS, new Application().run(args.toArray(new String[0])));
+        return new String(Files.readAllBytes(output), StandardCharsets.US_ASCII);
+    }
+
+    /**
+     * @return the hex of the source optimized in a single pass over all of its instructions
+     */
+    private String optimizeWholeSource() throws IOException {
+        TableLexerImpl lexer = new TableLexerImpl();
+        AsmX86ParserImpl parser = new AsmX86ParserImpl();
+        Assembler assembler = new AsmX86AssemblerImpl();
+        List<Instruction> instructions = new ArrayList<>(LINES);
+        StringBuilder hex = new StringBuilder();
+
+        for (String line : Files.readAllLines(source, StandardCharsets.UTF_8)) {
+            instructions.add(parser.parse(lexer.getLexemes(line)));
+        }
+
+        new PeepholeOptimizerImpl().optimize(instructions, instruction -> hex.append(assembler.assemble(instruction)));
+        return hex.toString();
+    }
+}
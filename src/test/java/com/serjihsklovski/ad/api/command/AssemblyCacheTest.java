@@ -0,0 +1,125 @@
+package com.serjihsklovski.ad.api.command;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNull;
+
+public class AssemblyCacheTest {
+
+    private static final List<String> CHUNK = Arrays.asList("not dx", "add bx, 127");
+    private static final List<String> OTHER_CHUNK = Arrays.asList("mov ax, bx");
+    private static final byte[] ENCODED = {0x66, (byte) 0xf7, (byte) 0xd2, 0x66, (byte) 0x83, (byte) 0xc3, 0x7f};
+    private static final byte[] OTHER_ENCODED = {0x66, (byte) 0x89, (byte) 0xd8};
+
+    /**
+     * The offset of the first byte of the first chunk, after the magic number.
+     */
+    private static final int FIRST_CHUNK_OFFSET = 4;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void reusesTheChunksOfThePreviousRun() throws IOException {
+        Path file = folder.getRoot().toPath().resolve("source.cache");
+
+        run(file, CHUNK, ENCODED);
+
+        try (AssemblyCache cache = AssemblyCache.load(file, ByteFormat.HEX, false)) {
+            assertArrayEquals(ENCODED, cache.get(cache.hash(CHUNK)));
+        }
+    }
+
+    @Test
+    public void keepsOnlyTheChunksOfTheLatestRun() throws IOException {
+        Path file = folder.getRoot().toPath().resolve("source.cache");
+
+        run(file, CHUNK, ENCODED);
+        run(file, OTHER_CHUNK, OTHER_ENCODED);
+
+        try (AssemblyCache cache = AssemblyCache.load(file, ByteFormat.HEX, false)) {
+            assertNull(cache.get(cache.hash(CHUNK)));
+            assertArrayEquals(OTHER_ENCODED, cache.get(cache.hash(OTHER_CHUNK)));
+        }
+    }
+
+    @Test
+    public void keysChunksByFormatAndOptimization() throws IOException {
+        Path file = folder.getRoot().toPath().resolve("source.cache");
+
+        try (AssemblyCache cache = AssemblyCache.load(file, ByteFormat.HEX, false);
+             AssemblyCache binary = AssemblyCache.load(file, ByteFormat.BIN, false);
+             AssemblyCache optimized = AssemblyCache.load(file, ByteFormat.HEX, true)) {
+            ByteBuffer hash = cache.hash(CHUNK);
+
+            assertNotEquals(hash, binary.hash(CHUNK));
+            assertNotEquals(hash, optimized.hash(CHUNK));
+            assertNotEquals(hash, cache.hash(Arrays.asList("not dxadd bx, 127")));
+        }
+    }
+
+    @Test
+    public void treatsAnInvalidFileAsEmpty() throws IOException {
+        Path file = folder.getRoot().toPath().resolve("source.cache");
+        Files.write(file, "not a cache".getBytes());
+
+        run(file, CHUNK, ENCODED);
+
+        try (AssemblyCache cache = AssemblyCache.load(file, ByteFormat.HEX, false)) {
+            assertArrayEquals(ENCODED, cache.get(cache.hash(CHUNK)));
+        }
+    }
+
+    @Test
+    public void missesADamagedChunk() throws IOException {
+        Path file = folder.getRoot().toPath().resolve("source.cache");
+
+        run(file, CHUNK, ENCODED);
+        byte[] bytes = Files.readAllBytes(file);
+        bytes[FIRST_CHUNK_OFFSET] ^= 1;
+        Files.write(file, bytes);
+
+        try (AssemblyCache cache = AssemblyCache.load(file, ByteFormat.HEX, false)) {
+            assertNull(cache.get(cache.hash(CHUNK)));
+        }
+    }
+
+    @Test
+    public void leavesThePreviousFileUnlessSaved() throws IOException {
+        Path file = folder.getRoot().toPath().resolve("source.cache");
+
+        run(file, CHUNK, ENCODED);
+
+        try (AssemblyCache cache = AssemblyCache.load(file, ByteFormat.HEX, false)) {
+            cache.put(cache.hash(OTHER_CHUNK), OTHER_ENCODED);
+        }
+
+        try (AssemblyCache cache = AssemblyCache.load(file, ByteFormat.HEX, false)) {
+            assertArrayEquals(ENCODED, cache.get(cache.hash(CHUNK)));
+            assertNull(cache.get(cache.hash(OTHER_CHUNK)));
+        }
+    }
+
+    private static void run(Path file, List<String> chunk, byte[] encoded) throws IOException {
+        try (AssemblyCache cache = AssemblyCache.load(file, ByteFormat.HEX, false)) {
+            ByteBuffer hash = cache.hash(chunk);
+
+            if (cache.get(hash) == null) {
+                cache.put(hash, encoded);
+            }
+
+            cache.save();
+        }
+    }
+}
@@ -0,0 +1,149 @@
+package com.serjihsklovski.ad.api.command;
+
+import org.apache.commons.cli.DefaultParser;
+import org.apache.commons.cli.Options;
+import org.apache.commons.cli.ParseException;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class BatchTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private Path inputs;
+    private Path outputs;
+    private RunStats stats;
+
+    @Before
+    public void createDirectories() throws IOException, ParseException {
+        inputs = folder.newFolder("in").toPath();
+        outputs = folder.getRoot().toPath().resolve("out");
+        stats = RunStats.of("assemble", new DefaultParser().parse(new Options(), new String[0]));
+    }
+
+    @Test
+    public void takesTheFilesWithTheInputExtensionFromADirectory() throws IOException {
+        write("a.asm", "b.asm.gz", "sub/c.asm", "notes.txt", ".hidden.asm", ".git/d.asm");
+
+        assertEquals(outputs("a.hex", "a.asm", "b.hex", "b.asm.gz", "sub/c.hex", "sub/c.asm"),
+                run(inputs.toString()));
+    }
+
+    @Test
+    public void takesTheFilesMatchingAGlob() throws IOException {
+        write("a.asm", "sub/c.asm", "sub/notes.txt");
+
+        assertEquals(outputs("c.hex", "sub/c.asm"), run(inputs.resolve("sub").resolve("*.asm").toString()));
+    }
+
+    @Test
+    public void takesTheFilesListedInAManifest() throws IOException {
+        write("a.asm", "sub/c.asm");
+        Path manifest = inputs.resolve("files.txt");
+        Files.write(manifest, Arrays.asList("# the sources", "sub/c.asm", "", "a.asm"), StandardCharsets.UTF_8);
+
+        assertEquals(outputs("a.hex", "a.asm", "sub/c.hex", "sub/c.asm"), run("@" + manifest));
+    }
+
+    @Test
+    public void rejectsInputsWithTheSameOutput() throws IOException {
+        write("a.asm", "a.asm.gz");
+
+        try {
+            run(inputs.toString());
+            fail();
+        } catch (RuntimeException expected) {
+            assertTrue(expected.getMessage().contains("inputs with the same output"));
+        }
+
+        assertTrue(Files.notExists(outputs));
+    }
+
+    @Test
+    public void reportsAllFailuresAtTheEnd() throws IOException {
+        write("a.asm", "b.asm", "c.asm");
+        Map<String, String> converted = new TreeMap<>();
+
+        try {
+            Batch.of(inputs.toString(), ".asm").run(outputs, ".hex", 2, stats, (input, output) -> {
+                if (!input.endsWith("b.asm")) {
+                    throw new RuntimeException("failed");
+                }
+
+                record(converted, input, output);
+            });
+            fail();
+        } catch (RuntimeException expected) {
+            assertTrue(expected.getMessage().startsWith("2 of 3 files failed:"));
+        }
+
+        assertEquals(outputs("b.hex", "b.asm"), converted);
+    }
+
+    @Test
+    public void rejectsAnEmptyBatchAndStandardStreams() throws IOException {
+        write("notes.txt");
+
+        for (String input : Arrays.asList(inputs.toString(), StandardStreams.NAME)) {
+            try {
+                run(input);
+                fail(input);
+            } catch (RuntimeException expected) {
+                // neither has input files
+            }
+        }
+    }
+
+    private void write(String... names) throws IOException {
+        for (String name : names) {
+            Path file = inputs.resolve(name);
+            Files.createDirectories(file.getParent());
+            Files.write(file, name.getBytes(StandardCharsets.UTF_8));
+        }
+    }
+
+    /**
+     * @return the inputs by the outputs they were converted to
+     */
+    private Map<String, String> run(String input) throws IOException {
+        Map<String, String> converted = new TreeMap<>();
+        Batch.of(input, ".asm").run(outputs, ".hex", 2, stats, (in, out) -> record(converted, in, out));
+        return converted;
+    }
+
+    private void record(Map<String, String> converted, Path input, Path output) {
+        synchronized (converted) {
+            converted.put(outputs.relativize(output).toString(), inputs.relativize(input).toString());
+        }
+    }
+
+    /**
+     * @param pairs each output followed by its input
+     */
+    private static Map<String, String> outputs(String... pairs) {
+        Map<String, String> outputs = new TreeMap<>();
+        List<String> list = Arrays.asList(pairs);
+
+        for (int i = 0; i < list.size(); i += 2) {
+            outputs.put(list.get(i), list.get(i + 1));
+        }
+
+        return outputs;
+    }
+}
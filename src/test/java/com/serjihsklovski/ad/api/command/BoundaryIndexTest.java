@@ -0,0 +1,109 @@
+package com.serjihsklovski.ad.api.command;
+
+import com.serjihsklovski.ad.Application;
+import com.serjihsklovski.ad.component.disassembler.AsmX86DisassemblerImpl;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+
+public class BoundaryIndexTest {
+
+    /**
+     * `not dx` at every multiple of 7 and `add bx, 0x7f` 3 bytes after it.
+     */
+    private static final byte[] PATTERN = {0x66, (byte) 0xf7, (byte) 0xd2, 0x66, (byte) 0x83, (byte) 0xc3, 0x7f};
+    private static final int REPEATS = 30_000;
+    private static final int SAMPLE_INTERVAL = 1 << 16;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private Path binary;
+    private Path indexFile;
+
+    @Before
+    public void writeBinary() throws IOException {
+        binary = folder.getRoot().toPath().resolve("code.bin");
+        indexFile = folder.getRoot().toPath().resolve("code.idx");
+        Files.write(binary, repeat(REPEATS));
+    }
+
+    @Test
+    public void findsTheLastSampledBoundaryAtOrBefore() throws IOException {
+        BoundaryIndex index = BoundaryIndex.of(indexFile, binary, new AsmX86DisassemblerImpl());
+
+        assertEquals(REPEATS * PATTERN.length, index.getDecodableSize());
+        assertEquals(0, index.getBoundaryAtOrBefore(0));
+        assertEquals(0, index.getBoundaryAtOrBefore(SAMPLE_INTERVAL));
+        assertEquals(SAMPLE_INTERVAL + 1, index.getBoundaryAtOrBefore(SAMPLE_INTERVAL + 1));
+        assertEquals(SAMPLE_INTERVAL + 1, index.getBoundaryAtOrBefore(2 * SAMPLE_INTERVAL - 1));
+        assertEquals(3 * SAMPLE_INTERVAL + 1, index.getBoundaryAtOrBefore(Long.MAX_VALUE));
+    }
+
+    @Test
+    public void stopsAtTheFirstIncompleteInstruction() throws IOException {
+        byte[] bytes = Arrays.copyOf(repeat(REPEATS), REPEATS * PATTERN.length + 2);
+        bytes[bytes.length - 2] = PATTERN[0];
+        bytes[bytes.length - 1] = PATTERN[1];
+        Files.write(binary, bytes);
+
+        BoundaryIndex index = BoundaryIndex.of(indexFile, binary, new AsmX86DisassemblerImpl());
+
+        assertEquals(REPEATS * PATTERN.length, index.getDecodableSize());
+    }
+
+    @Test
+    public void rebuildsAStaleIndex() throws IOException {
+        BoundaryIndex.of(indexFile, binary, new AsmX86DisassemblerImpl());
+        byte[] saved = Files.readAllBytes(indexFile);
+
+        Files.write(binary, repeat(REPEATS / 2));
+        BoundaryIndex index = BoundaryIndex.of(indexFile, binary, new AsmX86DisassemblerImpl());
+
+        assertEquals(REPEATS / 2 * PATTERN.length, index.getDecodableSize());
+        assertNotEquals(saved.length, Files.readAllBytes(indexFile).length);
+    }
+
+    @Test
+    public void rangeWritesTheInstructionsStartingInIt() throws IOException {
+        List<String> expected = Arrays.asList("add bx, 0x7f", "not dx", "add bx, 0x7f", "not dx");
+        String range = SAMPLE_INTERVAL + ":14";
+
+        assertEquals(expected, disassemble("-range", range));
+        assertEquals(expected, disassemble("-range", range, "-index", indexFile.toString()));
+        assertEquals(expected, disassemble("-range", range, "-index", indexFile.toString()));
+    }
+
+    private List<String> disassemble(String... options) throws IOException {
+        Path output = folder.newFile().toPath();
+        List<String> args = new ArrayList<>(Arrays.asList(
+                "-disassemble", "-format", "bin", "-input", binary.toString(), "-output", output.toString()));
+
+        args.addAll(Arrays.asList(options));
+
+        assertEquals(Application.EXIT_SUCCESS, new Application().run(args.toArray(new String[0])));
+        return Files.readAllLines(output, StandardCharsets.UTF_8);
+    }
+
+    private static byte[] repeat(int repeats) {
+        byte[] bytes = new byte[repeats * PATTERN.length];
+
+        for (int i = 0; i < bytes.length; i += PATTERN.length) {
+            System.arraycopy(PATTERN, 0, bytes, i, PATTERN.length);
+        }
+
+        return bytes;
+    }
+}
@@ -0,0 +1,135 @@
+package com.serjihsklovski.ad.api.command;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class CompressedStreamsTest {
+
+    /**
+     * Several blocks of the streams, the last one partial.
+     */
+    private static final int SIZE = (1 << 20) + 12_345;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void tellsCompressedNames() {
+        assertTrue(CompressedStreams.isCompressed(Paths.get("dir", "code.hex.gz")));
+        assertFalse(CompressedStreams.isCompressed(Paths.get("dir.gz", "code.hex")));
+        assertEquals("code.hex", CompressedStreams.getUncompressedName(Paths.get("dir", "code.hex.gz")));
+        assertEquals("code.hex", CompressedStreams.getUncompressedName(Paths.get("dir", "code.hex")));
+    }
+
+    @Test
+    public void deflatesWhatGzipInflates() throws IOException {
+        byte[] data = newData();
+        Path file = folder.getRoot().toPath().resolve("data.gz");
+
+        try (OutputStream out = CompressedStreams.newDeflatingStream(Files.newOutputStream(file))) {
+            out.write(data, 0, 1000);
+            out.write(data[1000]);
+            out.write(data, 1001, data.length - 1001);
+        }
+
+        try (InputStream in = new GZIPInputStream(Files.newInputStream(file))) {
+            assertArrayEquals(data, readAll(in));
+        }
+    }
+
+    @Test
+    public void inflatesWhatGzipDeflates() throws IOException {
+        byte[] data = newData();
+        Path file = folder.getRoot().toPath().resolve("data.gz");
+
+        try (OutputStream out = new GZIPOutputStream(Files.newOutputStream(file))) {
+            out.write(data);
+        }
+
+        try (InputStream in = CompressedStreams.newInputStream(file)) {
+            assertArrayEquals(data, readAll(in));
+        }
+    }
+
+    @Test
+    public void readsCompressedText() throws IOException {
+        Path file = folder.getRoot().toPath().resolve("source.asm.gz");
+
+        try (OutputStream out = new GZIPOutputStream(Files.newOutputStream(file))) {
+            out.write("not dx\nadd bx, 127\n".getBytes());
+        }
+
+        try (BufferedReader reader = CompressedStreams.newBufferedReader(file)) {
+            assertEquals("not dx", reader.readLine());
+            assertEquals("add bx, 127", reader.readLine());
+            assertNull(reader.readLine());
+        }
+    }
+
+    @Test
+    public void failsOnATruncatedInput() throws IOException {
+        Path whole = folder.getRoot().toPath().resolve("whole.gz");
+        Path truncated = folder.getRoot().toPath().resolve("truncated.gz");
+
+        try (OutputStream out = new GZIPOutputStream(Files.newOutputStream(whole))) {
+            out.write(newData());
+        }
+
+        byte[] bytes = Files.readAllBytes(whole);
+        Files.write(truncated, Arrays.copyOf(bytes, bytes.length / 2));
+
+        try (InputStream in = CompressedStreams.newInputStream(truncated)) {
+            readAll(in);
+            fail();
+        } catch (IOException expected) {
+            // the stream ends before the gzip trailer
+        }
+    }
+
+    /**
+     * @return bytes compressible enough to deflate quickly, yet not trivially
+     */
+    private static byte[] newData() {
+        Random random = new Random(11);
+        byte[] data = new byte[SIZE];
+
+        for (int i = 0; i < data.length; i++) {
+            data[i] = (byte) ('a' + random.nextInt(8));
+        }
+
+        return data;
+    }
+
+    private static byte[] readAll(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[4096];
+        int read;
+
+        while ((read = in.read(buffer)) != -1) {
+            out.write(buffer, 0, read);
+        }
+
+        return out.toByteArray();
+    }
+}
@@ -0,0 +1,80 @@
+package com.serjihsklovski.ad.api.command;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class MemoCacheTest {
+
+    private static final int CAPACITY = 32;
+    private static final int KEYS = 1000;
+
+    @Test
+    public void countsHitsAndMisses() {
+        MemoCache<Integer, String> memo = new MemoCache<>(CAPACITY);
+
+        assertNull(memo.get(1));
+        memo.put(1, "one");
+        assertEquals("one", memo.get(1));
+        assertEquals("one", memo.get(1));
+        assertNull(memo.get(2));
+
+        assertEquals(2, memo.getHits());
+        assertEquals(2, memo.getMisses());
+        assertEquals(0, memo.getEvictions());
+    }
+
+    @Test
+    public void holdsNoMoreThanItsCapacity() {
+        MemoCache<Integer, String> memo = new MemoCache<>(CAPACITY);
+
+        for (int key = 0; key < KEYS; key++) {
+            memo.put(key, Integer.toString(key));
+        }
+
+        int kept = 0;
+
+        for (int key = 0; key < KEYS; key++) {
+            if (memo.get(key) != null) {
+                kept++;
+            }
+        }
+
+        assertTrue(kept > 0 && kept <= CAPACITY);
+        assertEquals(KEYS - kept, memo.getEvictions());
+        assertEquals(kept, memo.getHits());
+        assertEquals(KEYS - kept, memo.getMisses());
+    }
+
+    @Test
+    public void evictsTheLeastRecentlyUsed() {
+        MemoCache<Integer, String> memo = new MemoCache<>(CAPACITY);
+
+        memo.put(-1, "used");
+        memo.put(-2, "unused");
+
+        for (int key = 0; key < KEYS; key++) {
+            assertEquals("used", memo.get(-1));
+            memo.put(key, Integer.toString(key));
+        }
+
+        assertEquals("used", memo.get(-1));
+        assertNull(memo.get(-2));
+    }
+
+    @Test
+    public void zeroCapacityDisablesIt() {
+        MemoCache<Integer, String> memo = new MemoCache<>(0);
+
+        memo.put(1, "one");
+
+        assertFalse(memo.isEnabled());
+        assertNull(memo.get(1));
+        assertEquals(0, memo.getHits());
+        assertEquals(1, memo.getMisses());
+        assertEquals(0, memo.getEvictions());
+    }
+}
@@ -0,0 +1,60 @@
+package com.serjihsklovski.ad.api.server;
+
+import org.junit.Test;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.util.Arrays;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+public class ServerProtocolTest {
+
+    @Test
+    public void requestCarriesTheTokenAndTheArguments() throws IOException {
+        String[] args = {"-assemble", "-input", "/tmp/source file.asm", "-output", "/tmp/code.hex"};
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        ServerProtocol.writeRequest(out, "secret", Arrays.asList(args));
+        BufferedReader reader = new BufferedReader(new InputStreamReader(
+                new ByteArrayInputStream(out.toByteArray()), ServerProtocol.CHARSET));
+
+        assertEquals("secret", reader.readLine());
+        assertArrayEquals(args, ServerProtocol.readRequest(reader));
+    }
+
+    @Test
+    public void responseCarriesTheReportAndTheStatus() throws IOException {
+        assertResponse("Error: `eax` - an unexpected token!\n", "Error: `eax` - an unexpected token!", 1);
+        assertResponse("done\n", "done\n", 0);
+        assertResponse("", "", 0);
+    }
+
+    @Test
+    public void responseWithoutAStatusFails() {
+        for (String response : Arrays.asList("", "report\n", "report\nnot a status\n", "report\n0")) {
+            try {
+                ServerProtocol.readResponse(new ByteArrayInputStream(response.getBytes(ServerProtocol.CHARSET)),
+                        new ByteArrayOutputStream());
+                fail(response);
+            } catch (IOException expected) {
+                // the connection was closed before the status
+            }
+        }
+    }
+
+    private static void assertResponse(String expectedReport, String report, int status) throws IOException {
+        ByteArrayOutputStream response = new ByteArrayOutputStream();
+        ByteArrayOutputStream readReport = new ByteArrayOutputStream();
+
+        ServerProtocol.writeResponse(response, report.getBytes(ServerProtocol.CHARSET), status);
+
+        assertEquals(status, ServerProtocol.readResponse(new ByteArrayInputStream(response.toByteArray()), readReport));
+        assertEquals(expectedReport, new String(readReport.toByteArray(), ServerProtocol.CHARSET));
+    }
+}
@@ -0,0 +1,82 @@
+package com.serjihsklovski.ad.api.server;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFilePermissions;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class ServerTokenTest {
+
+    private static final int PORT = 47357;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private String userHome;
+
+    @Before
+    public void setUserHome() {
+        userHome = System.getProperty("user.home");
+        System.setProperty("user.home", folder.getRoot().toString());
+    }
+
+    @After
+    public void restoreUserHome() {
+        System.setProperty("user.home", userHome);
+    }
+
+    @Test
+    public void clientReadsTheTokenTheServerCreated() throws IOException {
+        String token = ServerToken.create(PORT);
+
+        assertEquals(token, ServerToken.read(PORT));
+        assertNotEquals(token, ServerToken.create(PORT));
+    }
+
+    @Test
+    public void onlyTheOwnerCanReadTheToken() throws IOException {
+        ServerToken.create(PORT);
+
+        if (FileSystems.getDefault().supportedFileAttributeViews().contains("posix")) {
+            Path directory = folder.getRoot().toPath().resolve(".assembler-disassembler");
+
+            assertEquals("rwx------", PosixFilePermissions.toString(Files.getPosixFilePermissions(directory)));
+            assertEquals("rw-------", PosixFilePermissions.toString(
+                    Files.getPosixFilePermissions(directory.resolve("server-" + PORT + ".token"))));
+        }
+    }
+
+    @Test
+    public void deletedTokenTellsNoServerIsRunning() throws IOException {
+        ServerToken.create(PORT);
+        ServerToken.delete(PORT);
+
+        try {
+            ServerToken.read(PORT);
+            fail();
+        } catch (IOException expected) {
+            assertTrue(expected.getMessage().contains("is the server running?"));
+        }
+    }
+
+    @Test
+    public void matchesOnlyTheSameToken() {
+        assertTrue(ServerToken.matches("0123abcd", "0123abcd"));
+        assertFalse(ServerToken.matches("0123abcd", "0123abce"));
+        assertFalse(ServerToken.matches("0123abcd", "0123abc"));
+        assertFalse(ServerToken.matches("0123abcd", null));
+    }
+}
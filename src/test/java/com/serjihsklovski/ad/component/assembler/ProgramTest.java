@@ -0,0 +1,155 @@
+package com.serjihsklovski.ad.component.assembler;
+
+import com.serjihsklovski.ad.component.Instruction;
+import com.serjihsklovski.ad.component.Mnemonic;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+public class ProgramTest {
+
+    private final Program program = new Program(new AsmX86AssemblerImpl(), true);
+
+    @Test
+    public void forwardJumpIsShortUpTo127() throws IOException {
+        jump("end");
+        code(127);
+        label("end");
+
+        assertEquals("eb7f" + filler(127), link());
+    }
+
+    @Test
+    public void forwardJumpIsNearFrom128() throws IOException {
+        jump("end");
+        code(128);
+        label("end");
+
+        assertEquals("e980000000" + filler(128), link());
+    }
+
+    @Test
+    public void backwardJumpIsShortDownToMinus128() throws IOException {
+        label("start");
+        code(126);
+        jump("start");
+
+        assertEquals(filler(126) + "eb80", link());
+    }
+
+    @Test
+    public void backwardJumpIsNearFromMinus129() throws IOException {
+        label("start");
+        code(127);
+        jump("start");
+
+        assertEquals(filler(127) + "e97cffffff", link());
+    }
+
+    /**
+     * The forward jump only fits if the one it spans is short, which is known once the backward target is.
+     */
+    @Test
+    public void jumpsAreSizedTogether() throws IOException {
+        jump("end");
+        label("start");
+        code(125);
+        jump("start");
+        label("end");
+        jump("end");
+
+        assertEquals("eb7f" + filler(125) + "eb81" + "ebfe", link());
+    }
+
+    @Test
+    public void flushedCodeLinksAsIfKept() throws IOException {
+        assertEquals(assemble(false), assemble(true));
+    }
+
+    @Test
+    public void undefinedLabelFails() throws IOException {
+        jump("nowhere");
+
+        try {
+            link();
+            fail();
+        } catch (RuntimeException re) {
+            assertEquals("`nowhere` - an undefined label!", re.getMessage());
+        }
+    }
+
+    @Test
+    public void duplicateLabelFails() {
+        label("twice");
+        code(1);
+
+        try {
+            label("twice");
+            fail();
+        } catch (RuntimeException re) {
+            assertEquals("`twice` - a duplicate label!", re.getMessage());
+        }
+    }
+
+    /**
+     * Jumps of either size both ways, flushed after every line or not at all: a backward jump to a label already
+     * written, a forward one spanning a flush, and a short one whose size depends on a jump held back by it.
+     */
+    private String assemble(boolean flush) throws IOException {
+        Program program = new Program(new AsmX86AssemblerImpl(), true);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        for (int i = 0; i < 40; i++) {
+            Instruction label = new Instruction();
+            label.setLabel("l" + i);
+            program.add(label);
+            program.add(new Instruction(Mnemonic.JMP).addTarget("l" + (i + 3) % 40));
+            program.appendCode(fillerBytes(13 * i % 150), 0, 2 * (13 * i % 150));
+            program.add(new Instruction(Mnemonic.JMP).addTarget("l" + i / 2));
+
+            if (flush) {
+                program.flush(out);
+            }
+        }
+
+        program.writeTo(out);
+        return new String(out.toByteArray(), StandardCharsets.US_ASCII);
+    }
+
+    private void label(String name) {
+        Instruction instruction = new Instruction();
+        instruction.setLabel(name);
+        program.add(instruction);
+    }
+
+    private void jump(String target) {
+        program.add(new Instruction(Mnemonic.JMP).addTarget(target));
+    }
+
+    private void code(int length) {
+        program.appendCode(fillerBytes(length), 0, 2 * length);
+    }
+
+    private String link() throws IOException {
+        return new String(program.toByteArray(), StandardCharsets.US_ASCII);
+    }
+
+    private static byte[] fillerBytes(int length) {
+        return filler(length).getBytes(StandardCharsets.US_ASCII);
+    }
+
+    private static String filler(int length) {
+        StringBuilder hex = new StringBuilder();
+
+        for (int i = 0; i < length; i++) {
+            hex.append("90");
+        }
+
+        return hex.toString();
+    }
+}
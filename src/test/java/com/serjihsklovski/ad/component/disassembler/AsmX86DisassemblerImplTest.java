@@ -0,0 +1,37 @@
+package com.serjihsklovski.ad.component.disassembler;
+
+import com.serjihsklovski.ad.component.Instruction;
+import com.serjihsklovski.ad.component.Mnemonic;
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+
+public class AsmX86DisassemblerImplTest {
+
+    private final Disassembler disassembler = new AsmX86DisassemblerImpl();
+
+    /**
+     * The operand of a jump counts from the end of its opcode, as a 32-bit value: a short displacement plus 1.
+     */
+    @Test
+    public void shortJumpDecodesToSignExtendedOperand() {
+        assertEquals(Arrays.asList(jump(0x80), jump(0xffffff81L), jump(0xffffffffL)),
+                disassembler.disassemble("eb7feb80ebfe"));
+    }
+
+    @Test
+    public void shortAndNearJumpsToOneTargetDecodeAlike() {
+        assertEquals(disassembler.disassemble("eb10"), disassembler.disassemble("e90d000000"));
+    }
+
+    @Test(expected = RuntimeException.class)
+    public void shortJumpWithoutDisplacementIsIncomplete() {
+        disassembler.disassemble("eb");
+    }
+
+    private static Instruction jump(long displacement) {
+        return new Instruction(Mnemonic.JMP).addImmediate(displacement);
+    }
+}
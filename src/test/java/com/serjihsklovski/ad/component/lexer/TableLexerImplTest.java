@@ -0,0 +1,80 @@
+package com.serjihsklovski.ad.component.lexer;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class TableLexerImplTest {
+
+    private static final List<String> LINES = Arrays.asList(
+            "add ax, 127",
+            "  mov\tbx ,cx  ",
+            "loop_1:",
+            "jmp _start",
+            "add ax, -0x7f",
+            "mov ax, [bx+0o17]",
+            "mov ax, ä",
+            "",
+            "   ");
+
+    private final TableLexerImpl lexer = new TableLexerImpl();
+
+    @Test
+    public void splitsAtDelimitersAndDropsWhitespace() {
+        assertEquals(Arrays.asList("add", "ax", ",", "127", "\n"), lexer.getLexemes("add ax, 127"));
+        assertEquals(Arrays.asList("mov", "bx", ",", "cx", "\n"), lexer.getLexemes("  mov\tbx ,cx  "));
+        assertEquals(Arrays.asList("add", "ax", ",", "-", "0x7f", "\n"), lexer.getLexemes("add ax, -0x7f"));
+        assertEquals(Arrays.asList("\n"), lexer.getLexemes("   "));
+    }
+
+    @Test
+    public void keepsUnderscoresWithinLabels() {
+        assertEquals(Arrays.asList("loop_1", ":", "\n"), lexer.getLexemes("loop_1:"));
+        assertEquals(Arrays.asList("jmp", "_start", "\n"), lexer.getLexemes("jmp _start"));
+        assertFalse(lexer.isDelimiter('_'));
+        assertTrue(lexer.isDelimiter(':'));
+    }
+
+    @Test
+    public void treatsNonAsciiAsLexemeCharacters() {
+        assertEquals(Arrays.asList("mov", "ax", ",", "ä", "\n"), lexer.getLexemes("mov ax, ä"));
+    }
+
+    @Test
+    public void spansMatchTheLexemes() {
+        LexemeSpans spans = new LexemeSpans();
+
+        for (String line : LINES) {
+            lexer.getLexemeSpans(line, spans);
+            List<String> lexemes = new ArrayList<>();
+
+            for (int i = 0; i < spans.size(); i++) {
+                lexemes.add(spans.getLexeme(i));
+            }
+
+            lexemes.add(lexer.getEndLexeme());
+            assertEquals(line, lexer.getLexemes(line), lexemes);
+        }
+    }
+
+    @Test
+    public void matchesTheDefaultLexerOutsideWhitespaceAndLabels() {
+        Lexer defaultLexer = new DefaultLexerImpl();
+
+        for (String line : LINES) {
+            if (line.indexOf('_') < 0) {
+                List<String> expected = new ArrayList<>(defaultLexer.getLexemes(line));
+                expected.removeIf(lexeme -> lexeme.length() == 1 && Character.isWhitespace(lexeme.charAt(0)));
+                expected.add(defaultLexer.getEndLexeme());
+
+                assertEquals(line, expected, lexer.getLexemes(line));
+            }
+        }
+    }
+}
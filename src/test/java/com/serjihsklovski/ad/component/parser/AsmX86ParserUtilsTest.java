@@ -0,0 +1,107 @@
+package com.serjihsklovski.ad.component.parser;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class AsmX86ParserUtilsTest {
+
+    @Test
+    public void scansEveryRadix() {
+        assertScans(127, "127");
+        assertScans(0x7f, "0x7f");
+        assertScans(0x7f, "0X7F");
+        assertScans(0x7f, "0o177");
+        assertScans(0x7f, "0b1111111");
+        assertScans(0, "0");
+    }
+
+    @Test
+    public void scansSigns() {
+        assertScans(-128, "-128");
+        assertScans(128, "+128");
+        assertScans(-0x80, "0x-80");
+    }
+
+    @Test
+    public void scansTheWholeRangeOfALong() {
+        assertScans(Long.MAX_VALUE, "9223372036854775807");
+        assertScans(Long.MIN_VALUE, "-9223372036854775808");
+        assertScans(Long.MAX_VALUE, "0x7fffffffffffffff");
+        assertRejects("9223372036854775808");
+        assertRejects("-9223372036854775809");
+        assertRejects("0xffffffffffffffff");
+    }
+
+    @Test
+    public void rejectsWhatIsNotALiteral() {
+        assertRejects("");
+        assertRejects("-");
+        assertRejects("0x");
+        assertRejects("0b102");
+        assertRejects("0o8");
+        assertRejects("12a");
+        assertRejects("ax");
+        assertRejects("1 ");
+        assertRejects("-0x1");
+    }
+
+    @Test
+    public void scansOnlyTheGivenRange() {
+        NumericLiteral literal = new NumericLiteral();
+
+        assertTrue(AsmX86ParserUtils.scanNumber("add ax, 0x7f", 8, 12, literal));
+        assertEquals(0x7f, literal.getValue());
+        assertTrue(AsmX86ParserUtils.scanNumber("1234", 1, 3, literal));
+        assertEquals(23, literal.getValue());
+    }
+
+    @Test
+    public void keepsTheLiteralOnAFailedScan() {
+        NumericLiteral literal = new NumericLiteral();
+
+        assertTrue(AsmX86ParserUtils.scanNumber("42", 0, 2, literal));
+        assertFalse(AsmX86ParserUtils.scanNumber("4x", 0, 2, literal));
+        assertEquals(42, literal.getValue());
+    }
+
+    @Test
+    public void widthFitsTheValueUnsignedOrSignExtended() {
+        assertWidth(8, "0xff");
+        assertWidth(8, "-128");
+        assertWidth(16, "-129");
+        assertWidth(16, "0xffff");
+        assertWidth(32, "0x10000");
+        assertWidth(32, "0xffffffff");
+        assertWidth(32, "-2147483648");
+        assertWidth(64, "0x100000000");
+        assertWidth(64, "-2147483649");
+    }
+
+    @Test(expected = NumberFormatException.class)
+    public void parseFailsOnWhatIsNotALiteral() {
+        AsmX86ParserUtils.parseNumberFromString("0x");
+    }
+
+    private static void assertScans(long expected, String text) {
+        NumericLiteral literal = new NumericLiteral();
+
+        assertTrue(text, AsmX86ParserUtils.scanNumber(text, 0, text.length(), literal));
+        assertEquals(text, expected, literal.getValue());
+        assertEquals(text, expected, AsmX86ParserUtils.parseNumberFromString(text));
+    }
+
+    private static void assertRejects(String text) {
+        assertFalse(text, AsmX86ParserUtils.scanNumber(text, 0, text.length(), new NumericLiteral()));
+        assertFalse(text, AsmX86ParserUtils.isValue(text));
+    }
+
+    private static void assertWidth(int expected, String text) {
+        NumericLiteral literal = new NumericLiteral();
+
+        assertTrue(text, AsmX86ParserUtils.scanNumber(text, 0, text.length(), literal));
+        assertEquals(text, expected, literal.getWidth());
+    }
+}